@@ -0,0 +1,60 @@
+package com.example.abac_spike;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+@Entity
+public class AccountState {
+
+    @Id
+    private Long id;
+
+    private String name;
+
+    private String type;
+
+    @ManyToOne
+    private Broker broker;
+
+    public AccountState() {}
+
+    public AccountState(Long id, String name, String type, Broker broker) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.broker = broker;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Broker getBroker() {
+        return broker;
+    }
+
+    public void setBroker(Broker broker) {
+        this.broker = broker;
+    }
+}
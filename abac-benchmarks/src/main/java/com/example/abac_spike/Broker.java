@@ -0,0 +1,36 @@
+package com.example.abac_spike;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+@Entity
+public class Broker {
+
+    @Id
+    private Long id;
+
+    private String name;
+
+    public Broker() {}
+
+    public Broker(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.abac_spike;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import com.example.abac_commons.CompiledPolicyCache;
+import com.example.abac_commons.DisjunctionNormalizer;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.PathBuilder;
+
+import be.heydari.lib.converters.criteriaquery.CriteriaQueryUtils;
+import be.heydari.lib.converters.jpql.JPQLUtils;
+import be.heydari.lib.converters.querydsl.QueryDslUtils;
+import be.heydari.lib.converters.solr.SolrUtils;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Policy to query conversion, for the abac-lib converters and for the factored conversions the repository layer
+ * uses on top of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConverterBenchmark {
+
+    private static final String ALIAS = "accountState";
+
+    @Param({"1", "10", "100", "1000"})
+    public int conjunctions;
+
+    private Disjunction policy;
+    private Disjunction normalized;
+    private PathBuilder entityPath;
+    private CompiledPolicyCache policyCache;
+    private QueryAugmentingABACAspect aspect;
+
+    private EmbeddedDatabase db;
+    private EntityManagerFactory emf;
+    private EntityManager em;
+    private CriteriaBuilder cb;
+    private Root<AccountState> root;
+
+    @Setup
+    public void setup() {
+        policy = Policies.grants(conjunctions);
+        normalized = DisjunctionNormalizer.normalize(policy);
+        entityPath = new PathBuilder(AccountState.class, ALIAS);
+        policyCache = new CompiledPolicyCache();
+        aspect = new QueryAugmentingABACAspect(null, null, policyCache);
+
+        db = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.HSQL).generateUniqueName(true).build();
+
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(db);
+        factory.setPackagesToScan(AccountState.class.getPackage().getName());
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.afterPropertiesSet();
+
+        emf = factory.getObject();
+        em = emf.createEntityManager();
+        cb = em.getCriteriaBuilder();
+        root = cb.createQuery(AccountState.class).from(AccountState.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        em.close();
+        emf.close();
+        db.shutdown();
+    }
+
+    @Benchmark
+    public BooleanExpression queryDsl() {
+        return QueryDslUtils.from(policy, entityPath, AccountState.class);
+    }
+
+    /** normalized and factored QueryDSL compilation, as done on a compiled policy cache miss */
+    @Benchmark
+    public BooleanExpression queryDslCompiled() {
+        return policyCache.compile(policy, AccountState.class, ALIAS);
+    }
+
+    @Benchmark
+    public String jpql() {
+        return JPQLUtils.from(policy, ALIAS);
+    }
+
+    @Benchmark
+    public String jpqlFactored() {
+        return aspect.jpql(normalized, ALIAS, new QueryAugmentingABACAspect.JpqlParameters(0));
+    }
+
+    @Benchmark
+    public Predicate criteria() {
+        return CriteriaQueryUtils.from(policy, root, cb);
+    }
+
+    @Benchmark
+    public Predicate criteriaFactored() {
+        return aspect.criteria(normalized, root, cb, new HashMap<>());
+    }
+
+    @Benchmark
+    public String[] solr() {
+        return SolrUtils.from(policy, "");
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.abac_spike;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Attribute enforcement on save for an entity satisfying every predicate of the policy, i.e. the full walk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnforceAttributesBenchmark {
+
+    private static final String TYPE = "statement";
+
+    @Param({"1", "10", "100", "1000"})
+    public int conjunctions;
+
+    private QueryAugmentingABACAspect aspect;
+    private AccountState entity;
+    private Disjunction policy;
+
+    @Setup
+    public void setup() {
+        aspect = new QueryAugmentingABACAspect(null, null);
+        entity = new AccountState(1L, "name", TYPE, new Broker(1L, "broker"));
+        policy = Policies.repeatedGrant(conjunctions, TYPE);
+    }
+
+    @Benchmark
+    public AccountState enforceAbacAttributes() {
+        aspect.enforceAbacAttributes(entity, policy);
+        return entity;
+    }
+}
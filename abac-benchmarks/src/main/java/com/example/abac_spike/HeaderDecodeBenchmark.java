@@ -0,0 +1,62 @@
+package com.example.abac_spike;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.abac_commons.ABACContextDecoder;
+
+import be.heydari.lib.converters.protobuf.ProtobufUtils;
+import be.heydari.lib.converters.protobuf.generated.PDisjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeaderDecodeBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int conjunctions;
+
+    private String header;
+    private ABACContextDecoder decoder;
+
+    @Setup
+    public void setup() throws Exception {
+        header = Policies.header(Policies.grants(conjunctions));
+        decoder = new ABACContextDecoder();
+        decoder.decode(header);
+    }
+
+    /** Base64 and protobuf decode as done per request before decoding was cached */
+    @Benchmark
+    public Disjunction protobuf() throws Exception {
+        PDisjunction pDisjunction = PDisjunction.newBuilder().mergeFrom(Base64.getDecoder().decode(header)).build();
+        return ProtobufUtils.to(pDisjunction, "");
+    }
+
+    /** decode and normalization on a decoder cache miss */
+    @Benchmark
+    public Disjunction decodeUncached() {
+        return ABACContextDecoder.decodeUncached(header);
+    }
+
+    @Benchmark
+    public Disjunction decodeCached() throws Exception {
+        return decoder.decode(header);
+    }
+}
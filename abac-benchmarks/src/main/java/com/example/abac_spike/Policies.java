@@ -0,0 +1,60 @@
+package com.example.abac_spike;
+
+import java.util.Base64;
+import java.util.Collections;
+
+import com.example.abac_commons.RegoPartialEvaluator;
+
+import be.heydari.lib.converters.protobuf.ProtobufUtils;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Generates residual policies of a given size shaped like real OPA residuals for brokers with many grants.
+ *
+ * Policies are rendered as rego, partially evaluated in-process and walked into a {@link Disjunction}, so they go
+ * through the same code path as residuals acquired from OPA.
+ */
+final class Policies {
+
+    static final String QUERY = "data.benchmarks.allow";
+    static final String UNKNOWN = "data.accountState";
+
+    private Policies() {}
+
+    /**
+     * @return a policy granting access to {@code conjunctions} brokers, every fourth grant restricted to a type
+     */
+    static Disjunction grants(int conjunctions) {
+        StringBuilder rego = new StringBuilder("package benchmarks\n");
+        for (int i = 0; i < conjunctions; i++) {
+            rego.append("allow {\n");
+            rego.append("  data.accountState.broker.id == \"").append(i).append("L\"\n");
+            if (i % 4 == 3) {
+                rego.append("  data.accountState.type == \"type").append(i).append("\"\n");
+            }
+            rego.append("}\n");
+        }
+        return compile(rego);
+    }
+
+    /**
+     * @return a policy of {@code conjunctions} repeated grants on a single type, satisfied by entities of that type
+     */
+    static Disjunction repeatedGrant(int conjunctions, String type) {
+        StringBuilder rego = new StringBuilder("package benchmarks\n");
+        for (int i = 0; i < conjunctions; i++) {
+            rego.append("allow {\n");
+            rego.append("  data.accountState.type == \"").append(type).append("\"\n");
+            rego.append("}\n");
+        }
+        return compile(rego);
+    }
+
+    static String header(Disjunction policy) {
+        return Base64.getEncoder().encodeToString(ProtobufUtils.from(policy, "").toByteArray());
+    }
+
+    private static Disjunction compile(StringBuilder rego) {
+        return new RegoPartialEvaluator(rego.toString()).compile(QUERY, Collections.emptyMap(), Collections.singletonList(UNKNOWN));
+    }
+}
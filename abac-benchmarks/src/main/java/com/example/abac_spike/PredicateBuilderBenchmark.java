@@ -0,0 +1,93 @@
+package com.example.abac_spike;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.querydsl.SimpleEntityPathResolver;
+import org.springframework.data.querydsl.binding.QuerydslBindings;
+import org.springframework.data.querydsl.binding.XenitQuerydslPredicateBuilder;
+import org.springframework.data.repository.core.support.AbstractEntityInformation;
+import org.springframework.data.util.ClassTypeInformation;
+import org.springframework.data.util.TypeInformation;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import com.example.abac_commons.ABACContext;
+import com.example.abac_commons.CompiledPolicyCache;
+import com.example.abac_commons.DisjunctionNormalizer;
+import com.example.abac_commons.EntityContext;
+import com.querydsl.core.types.Predicate;
+
+/**
+ * {@link XenitQuerydslPredicateBuilder#getPredicate} with the ABAC context of a request set, with the compiled
+ * policy served from the cache and compiled afresh.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PredicateBuilderBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int conjunctions;
+
+    private CompiledPolicyCache policyCache;
+    private XenitQuerydslPredicateBuilder builder;
+    private TypeInformation<?> type;
+    private MultiValueMap<String, String> parameters;
+    private QuerydslBindings bindings;
+
+    @Setup
+    public void setup() {
+        policyCache = new CompiledPolicyCache();
+        builder = new XenitQuerydslPredicateBuilder(DefaultConversionService.getSharedInstance(), SimpleEntityPathResolver.INSTANCE, policyCache);
+        type = ClassTypeInformation.from(AccountState.class);
+        parameters = new LinkedMultiValueMap<>();
+        bindings = new QuerydslBindings();
+
+        ABACContext.setCurrentAbacContext(DisjunctionNormalizer.normalize(Policies.grants(conjunctions)));
+        EntityContext.setCurrentEntityContext(new AbstractEntityInformation<AccountState, Long>(AccountState.class) {
+
+            @Override
+            public Long getId(AccountState entity) {
+                return entity.getId();
+            }
+
+            @Override
+            public Class<Long> getIdType() {
+                return Long.class;
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        ABACContext.clear();
+        EntityContext.clear();
+    }
+
+    @Benchmark
+    public Predicate getPredicate() {
+        return builder.getPredicate(type, parameters, bindings);
+    }
+
+    @Benchmark
+    public Predicate getPredicateUncached() {
+        policyCache.invalidateAll();
+        return builder.getPredicate(type, parameters, bindings);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.abac_spike;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.abac_spike.QueryAugmentingABACAspect.QueryAST;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryASTBenchmark {
+
+    @Param({
+        "select d from AccountState d",
+        "select d from AccountState d where d.type = :type",
+        "select d from AccountState d where d.type = :type and d.name = :name order by d.name asc",
+        "select count(d) from AccountState d where d.broker.id = :brokerId"
+    })
+    public String query;
+
+    private QueryAST ast;
+
+    @Setup
+    public void setup() {
+        ast = QueryAST.fromQueryString(query);
+    }
+
+    @Benchmark
+    public QueryAST fromQueryString() {
+        return QueryAST.fromQueryString(query);
+    }
+
+    @Benchmark
+    public String toQueryString() {
+        return ast.toString();
+    }
+}
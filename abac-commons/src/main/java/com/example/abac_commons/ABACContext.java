@@ -1,10 +1,10 @@
-package com.example.abac_spike;
+package com.example.abac_commons;
 
 import be.heydari.lib.expressions.Disjunction;
 
 public class ABACContext {
 
-    private static ThreadLocal<Disjunction> currentAbacContext = new InheritableThreadLocal<Disjunction>();
+    private static ThreadLocal<Disjunction> currentAbacContext = new ThreadLocal<Disjunction>();
 
     public static Disjunction getCurrentAbacContext() {
         return currentAbacContext.get();
@@ -15,6 +15,6 @@ public class ABACContext {
     }
 
     public static void clear() {
-        currentAbacContext.set(null);
+        currentAbacContext.remove();
     }
 }
@@ -0,0 +1,74 @@
+package com.example.abac_commons;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Base64;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import be.heydari.lib.converters.protobuf.ProtobufUtils;
+import be.heydari.lib.converters.protobuf.generated.PDisjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Decodes X-ABAC-Context headers into {@link Disjunction}s, caching the result by raw header value so that
+ * the Base64/protobuf decode is only paid once per distinct residual policy.
+ *
+ * Decoded disjunctions are shared between requests and must be treated as read-only.
+ */
+public class ABACContextDecoder {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1000;
+    public static final Duration DEFAULT_EXPIRE_AFTER_ACCESS = Duration.ofMinutes(10);
+
+    private final Cache<String, Disjunction> cache;
+
+    public ABACContextDecoder() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRE_AFTER_ACCESS);
+    }
+
+    public ABACContextDecoder(long maximumSize, Duration expireAfterAccess) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+    }
+
+    public Disjunction decode(String abacContext) throws IOException {
+        try {
+            return cache.get(abacContext, ABACContextDecoder::decodeUncached);
+        } catch (UncheckedIOException uioe) {
+            throw uioe.getCause();
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public static Disjunction decodeUncached(String abacContext) {
+        try {
+            byte[] abacContextProtobytes = Base64.getDecoder().decode(abacContext);
+            PDisjunction pDisjunction = PDisjunction.newBuilder().mergeFrom(abacContextProtobytes).build();
+            return DisjunctionNormalizer.normalize(ProtobufUtils.to(pDisjunction, ""));
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+}
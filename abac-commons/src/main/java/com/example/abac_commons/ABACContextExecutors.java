@@ -0,0 +1,119 @@
+package com.example.abac_commons;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.util.Assert;
+
+/**
+ * Wraps executors so that each task runs with the ABAC state of the thread that submitted it.
+ *
+ * Use the wrapped executor for {@code CompletableFuture.supplyAsync(..., executor)} and friends. Parallel streams
+ * run on the common pool and cannot be wrapped; capture an {@link ABACContextSnapshot} and restore it inside the
+ * stream's lambdas instead.
+ */
+public final class ABACContextExecutors {
+
+    private ABACContextExecutors() {}
+
+    public static Executor wrap(Executor executor) {
+        Assert.notNull(executor, "executor must not be null");
+        return task -> executor.execute(ABACContextSnapshot.capture().wrap(task));
+    }
+
+    public static ExecutorService wrap(ExecutorService executor) {
+        Assert.notNull(executor, "executor must not be null");
+        return new ContextPropagatingExecutorService(executor);
+    }
+
+    private static final class ContextPropagatingExecutorService implements ExecutorService {
+
+        private final ExecutorService delegate;
+
+        ContextPropagatingExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(ABACContextSnapshot.capture().wrap(command));
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return delegate.submit(ABACContextSnapshot.capture().wrap(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return delegate.submit(ABACContextSnapshot.capture().wrap(task), result);
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return delegate.submit(ABACContextSnapshot.capture().wrap(task));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return delegate.invokeAll(wrapAll(tasks));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.invokeAll(wrapAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+            return delegate.invokeAny(wrapAll(tasks));
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return delegate.invokeAny(wrapAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+        private static <T> List<Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks) {
+            ABACContextSnapshot snapshot = ABACContextSnapshot.capture();
+            List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                wrapped.add(snapshot.wrap(task));
+            }
+            return wrapped;
+        }
+    }
+}
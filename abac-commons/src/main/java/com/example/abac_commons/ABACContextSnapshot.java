@@ -0,0 +1,100 @@
+package com.example.abac_commons;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.data.repository.core.EntityInformation;
+
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * An immutable copy of the current thread's ABAC state: the residual policy, the entity information and the
+ * entity manager context.
+ *
+ * The contexts are plain thread locals and are not inherited, so work handed to another thread must carry a
+ * snapshot explicitly; see {@link ABACContextExecutors} and {@link ABACContextTaskDecorator}. Restoring a snapshot
+ * returns a {@link Scope} that puts the worker thread's previous state back when closed, so pooled threads never
+ * keep a policy beyond the task that needed it.
+ */
+public final class ABACContextSnapshot {
+
+    private final Disjunction abacContext;
+    private final EntityInformation entityContext;
+    private final EntityManagerContext entityManagerContext;
+
+    private ABACContextSnapshot(Disjunction abacContext, EntityInformation entityContext, EntityManagerContext entityManagerContext) {
+        this.abacContext = abacContext;
+        this.entityContext = entityContext;
+        this.entityManagerContext = entityManagerContext;
+    }
+
+    public static ABACContextSnapshot capture() {
+        return new ABACContextSnapshot(ABACContext.getCurrentAbacContext(),
+                EntityContext.getCurrentEntityContext(),
+                EntityManagerContext.getCurrentEntityContext());
+    }
+
+    public Scope restore() {
+        ABACContextSnapshot previous = capture();
+        apply(this);
+        return () -> apply(previous);
+    }
+
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            try (Scope scope = restore()) {
+                task.run();
+            }
+        };
+    }
+
+    public <V> Callable<V> wrap(Callable<V> task) {
+        return () -> {
+            try (Scope scope = restore()) {
+                return task.call();
+            }
+        };
+    }
+
+    public Disjunction getAbacContext() {
+        return abacContext;
+    }
+
+    public EntityInformation getEntityContext() {
+        return entityContext;
+    }
+
+    public EntityManagerContext getEntityManagerContext() {
+        return entityManagerContext;
+    }
+
+    private static void apply(ABACContextSnapshot snapshot) {
+
+        if (snapshot.abacContext != null) {
+            ABACContext.setCurrentAbacContext(snapshot.abacContext);
+        } else {
+            ABACContext.clear();
+        }
+
+        if (snapshot.entityContext != null) {
+            EntityContext.setCurrentEntityContext(snapshot.entityContext);
+        } else {
+            EntityContext.clear();
+        }
+
+        if (snapshot.entityManagerContext != null) {
+            EntityManagerContext.setCurrentEntityContext(snapshot.entityManagerContext);
+        } else {
+            EntityManagerContext.clear();
+        }
+    }
+
+    /**
+     * Restored state; closing it reinstates the state the thread had before.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.abac_commons;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Propagates the submitting thread's ABAC state to tasks run by Spring task executors, including
+ * {@code @Async} methods when registered with the application's ThreadPoolTaskExecutor.
+ */
+public class ABACContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return ABACContextSnapshot.capture().wrap(runnable);
+    }
+}
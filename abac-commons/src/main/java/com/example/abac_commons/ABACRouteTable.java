@@ -0,0 +1,147 @@
+package com.example.abac_commons;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.data.repository.core.EntityInformation;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+
+import internal.org.springframework.content.rest.utils.RepositoryUtils;
+
+/**
+ * Immutable lookup from request path to the {@link EntityInformation} of the repository it addresses.
+ *
+ * Built once at startup from the exported repositories. Resolution follows the same rules the filter always
+ * used: the first path segment names a repository (e.g. /accountStates/1) and, failing that, the second one
+ * does (e.g. /content/accountStates/1). Lookups compare path regions in place and do not allocate.
+ *
+ * Only protected repositories are routed. {@link #getUrlPatterns()} lists the servlet URL patterns covering them
+ * under each known prefix (the root, the Spring Data REST base path and the content base URI), so the filter is
+ * only mapped to protected traffic and everything else never enters it.
+ */
+public class ABACRouteTable {
+
+    /** path of the batch endpoints of protected repositories */
+    public static final String BATCH_PATH = "/{repository}/batch";
+
+    /** most ids one batch request may name */
+    public static final int MAX_BATCH_IDS = 1000;
+
+    private final String[] segments;
+    private final EntityInformation<?, ?>[] entities;
+    private final List<String> urlPatterns;
+
+    ABACRouteTable(Map<String, EntityInformation<?, ?>> routes) {
+        this(routes, Collections.singletonList(""));
+    }
+
+    ABACRouteTable(Map<String, EntityInformation<?, ?>> routes, List<String> prefixes) {
+        this.segments = routes.keySet().toArray(new String[0]);
+        this.entities = routes.values().toArray(new EntityInformation<?, ?>[0]);
+
+        List<String> patterns = new ArrayList<>();
+        for (String prefix : prefixes) {
+            for (String segment : segments) {
+                patterns.add(prefix + "/" + segment + "/*");
+            }
+        }
+        this.urlPatterns = Collections.unmodifiableList(patterns);
+    }
+
+    public static ABACRouteTable build(Repositories repos, EntityManager em) {
+        return build(repos, em, ri -> true);
+    }
+
+    /**
+     * @param isProtected selects the repositories that are subject to ABAC
+     * @param prefixes base paths, in addition to the root, that repositories or their content are served under
+     */
+    public static ABACRouteTable build(Repositories repos, EntityManager em, Predicate<RepositoryInformation> isProtected, URI... prefixes) {
+
+        Map<String, EntityInformation<?, ?>> routes = new TreeMap<>();
+
+        for (Class<?> domainType : repos) {
+            Optional<RepositoryInformation> ri = repos.getRepositoryInformationFor(domainType);
+            if (!ri.isPresent() || !isProtected.test(ri.get())) {
+                continue;
+            }
+
+            routes.put(RepositoryUtils.repositoryPath(ri.get()), JpaEntityInformationSupport.getEntityInformation(domainType, em));
+        }
+
+        Set<String> normalized = new LinkedHashSet<>();
+        normalized.add("");
+        for (URI prefix : prefixes) {
+            normalized.add(normalize(prefix));
+        }
+
+        return new ABACRouteTable(routes, new ArrayList<>(normalized));
+    }
+
+    public EntityInformation<?, ?> lookup(String path) {
+
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = segmentEnd(path, start);
+
+        EntityInformation<?, ?> ei = find(path, start, end);
+        if (ei == null && end < path.length()) {
+            ei = find(path, end + 1, segmentEnd(path, end + 1));
+        }
+        return ei;
+    }
+
+    public String[] getPaths() {
+        return segments.clone();
+    }
+
+    public List<String> getUrlPatterns() {
+        return urlPatterns;
+    }
+
+    /**
+     * @return the handler mapping pattern of the items of the routed repositories, binding {@code repository} and
+     *         {@code id}, or null when no repository is routed
+     */
+    public String getItemPattern() {
+        return segments.length > 0 ? "/{repository:" + String.join("|", segments) + "}/{id}" : null;
+    }
+
+    private EntityInformation<?, ?> find(String path, int start, int end) {
+
+        int length = end - start;
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].length() == length && path.regionMatches(start, segments[i], 0, length)) {
+                return entities[i];
+            }
+        }
+        return null;
+    }
+
+    private static String normalize(URI prefix) {
+        String path = prefix != null && prefix.getPath() != null ? prefix.getPath() : "";
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (!path.isEmpty() && !path.startsWith("/")) {
+            path = "/" + path;
+        }
+        return path;
+    }
+
+    private static int segmentEnd(String path, int start) {
+        int end = path.indexOf('/', start);
+        return end == -1 ? path.length() : end;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.abac_commons;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.data.repository.core.EntityInformation;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Deletes many entities of a protected repository with one conditional statement, {@code DELETE
+ * /{repository}/batch?ids=1,2,3}, and returns how many were deleted.
+ *
+ * Item deletes are left to Spring Data REST, so that its delete events, If-Match preconditions and the lock checks
+ * of versioned repositories apply to them. Batch deletes bypass all three.
+ */
+@ResponseBody
+@RequestMapping
+public class AbacDeleteController {
+
+    private final ABACRouteTable routes;
+    private final AbacDeletes deletes;
+
+    public AbacDeleteController(ABACRouteTable routes, AbacDeletes deletes) {
+        this.routes = routes;
+        this.deletes = deletes;
+    }
+
+    @DeleteMapping(ABACRouteTable.BATCH_PATH)
+    public ResponseEntity<Map<String, Long>> deleteAllById(@PathVariable String repository, @RequestParam("ids") List<String> ids) {
+
+        EntityInformation<?, ?> ei = routes.lookup(repository);
+        if (ei == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Set<String> requested = new LinkedHashSet<>(ids);
+        if (requested.size() > ABACRouteTable.MAX_BATCH_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        BatchIds batchIds;
+        try {
+            batchIds = BatchIds.of(requested, ei.getIdType());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        long deleted = deletes.deleteAllById(ei.getJavaType(), batchIds.typed());
+        return ResponseEntity.ok(Collections.singletonMap("deleted", deleted));
+    }
+}
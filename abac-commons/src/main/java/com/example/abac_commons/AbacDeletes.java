@@ -0,0 +1,112 @@
+package com.example.abac_commons;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+
+import org.springframework.content.commons.utils.BeanUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import io.micrometer.core.instrument.Timer;
+
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Deletes entities of a domain type visible under the current ABAC context with a single
+ * {@code delete ... where <condition> and <policy>} statement, without loading them first.
+ *
+ * Statements join the caller's transaction, or run in their own when there is none, and return the number of
+ * entities deleted. Entities the policy denies are not deleted and are not counted, exactly as if they did not
+ * exist. Being bulk statements, they bypass the persistence context: cascades and entity listeners do not apply,
+ * and entities already loaded in the persistence context are not detached.
+ */
+public class AbacDeletes {
+
+    private static final String ENTITY_ALIAS = "entity";
+
+    private final EntityManager em;
+    private final PlatformTransactionManager ptm;
+    private final CompiledPolicyCache policyCache;
+    private final AbacMetrics metrics;
+
+    public AbacDeletes(EntityManager em, PlatformTransactionManager ptm, CompiledPolicyCache policyCache, AbacMetrics metrics) {
+        this.em = em;
+        this.ptm = ptm;
+        this.policyCache = policyCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return 1 when the entity was deleted, 0 when it does not exist or is denied
+     */
+    public long deleteById(Class<?> domainType, Object id) {
+        Assert.notNull(id, "The given id must not be null!");
+
+        PathBuilder<?> entityPath = policyCache.entityPath(domainType, ENTITY_ALIAS);
+        return delete(domainType, idPath(domainType, entityPath).eq(id), "deleteById");
+    }
+
+    public long deleteAllById(Class<?> domainType, Iterable<?> ids) {
+        Assert.notNull(ids, "The given Iterable of Id's must not be null!");
+
+        List<Object> idList = new ArrayList<>();
+        ids.forEach(idList::add);
+        if (idList.isEmpty()) {
+            return 0;
+        }
+
+        PathBuilder<?> entityPath = policyCache.entityPath(domainType, ENTITY_ALIAS);
+        return delete(domainType, idPath(domainType, entityPath).in(idList), "deleteAllById");
+    }
+
+    /**
+     * @param filter a predicate over {@code new PathBuilder(domainType, "entity")}, or null to delete every visible
+     *        entity
+     * @throws IllegalStateException when there is neither a filter nor an ABAC context, which would delete every row
+     */
+    public long deleteAll(Class<?> domainType, Predicate filter) {
+        Assert.state(filter != null || ABACContext.getCurrentAbacContext() != null, "deleteAll requires a filter or an ABAC context");
+
+        return delete(domainType, filter, "deleteAll");
+    }
+
+    private long delete(Class<?> domainType, Predicate condition, String operation) {
+        PathBuilder<?> entityPath = policyCache.entityPath(domainType, ENTITY_ALIAS);
+
+        List<Predicate> where = new ArrayList<>(2);
+        if (condition != null) {
+            where.add(condition);
+        }
+
+        Disjunction abacContext = ABACContext.getCurrentAbacContext();
+        if (abacContext != null) {
+            Timer.Sample sample = metrics.start();
+            where.add(policyCache.get(abacContext, domainType, ENTITY_ALIAS));
+            metrics.stop(sample, AbacMetrics.PREDICATE, domainType, operation);
+        }
+
+        Timer.Sample sample = metrics.start();
+        try {
+            return new TransactionTemplate(ptm).execute(status ->
+                    new JPAQueryFactory(em).delete(entityPath).where(where.toArray(new Predicate[0])).execute());
+        } finally {
+            EntityMemo.evict(domainType);
+            metrics.stop(sample, AbacMetrics.QUERY, domainType, operation);
+        }
+    }
+
+    private static PathBuilder<Object> idPath(Class<?> domainType, PathBuilder<?> entityPath) {
+        Field idField = BeanUtils.findFieldWithAnnotation(domainType, Id.class);
+        Assert.notNull(idField, "missing id field");
+        return entityPath.get(idField.getName());
+    }
+}
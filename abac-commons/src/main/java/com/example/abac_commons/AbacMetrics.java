@@ -0,0 +1,91 @@
+package com.example.abac_commons;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import be.heydari.lib.expressions.Conjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Micrometer instrumentation of the ABAC enforcement phases.
+ *
+ * Every phase is timed as {@value #PHASE_TIMER}, tagged with the phase, the domain type and the operation, so the
+ * phase dominating latency can be read off per endpoint. Policy sizes are published as gauges of the most recent
+ * policy and as distributions over all policies. Without a {@link MeterRegistry} the global registry is used, which
+ * discards everything until a registry is added to it.
+ */
+public class AbacMetrics {
+
+    public static final String PHASE_TIMER = "abac.phase";
+    public static final String DENIED_COUNTER = "abac.denied";
+    public static final String CONJUNCTIONS = "abac.policy.conjunctions";
+    public static final String PREDICATES = "abac.policy.predicates";
+    public static final String CURRENT_CONJUNCTIONS = "abac.policy.conjunctions.current";
+    public static final String CURRENT_PREDICATES = "abac.policy.predicates.current";
+
+    public static final String DECODE = "decode";
+    public static final String PREDICATE = "predicate";
+    public static final String QUERY = "query";
+    public static final String ENFORCE = "enforce";
+    public static final String SAVE_REFETCH = "save_refetch";
+
+    private final MeterRegistry registry;
+
+    private final AtomicLong lastConjunctions = new AtomicLong();
+    private final AtomicLong lastPredicates = new AtomicLong();
+    private final DistributionSummary conjunctions;
+    private final DistributionSummary predicates;
+
+    public AbacMetrics() {
+        this(Metrics.globalRegistry);
+    }
+
+    public AbacMetrics(MeterRegistry registry) {
+        Assert.notNull(registry, "registry must not be null");
+        this.registry = registry;
+
+        registry.gauge(CURRENT_CONJUNCTIONS, lastConjunctions);
+        registry.gauge(CURRENT_PREDICATES, lastPredicates);
+        this.conjunctions = registry.summary(CONJUNCTIONS);
+        this.predicates = registry.summary(PREDICATES);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void stop(Timer.Sample sample, String phase, Class<?> domainType, String operation) {
+        sample.stop(registry.timer(PHASE_TIMER, tags(phase, domainType, operation)));
+    }
+
+    public void denied(String phase, Class<?> domainType, String operation) {
+        registry.counter(DENIED_COUNTER, tags(phase, domainType, operation)).increment();
+    }
+
+    public void policySize(Disjunction policy) {
+
+        long c = policy.getConjunctivePredicates().size();
+        long p = 0;
+        for (Conjunction conjunction : policy.getConjunctivePredicates()) {
+            p += conjunction.getPredicates().size();
+        }
+
+        lastConjunctions.set(c);
+        lastPredicates.set(p);
+        conjunctions.record(c);
+        predicates.record(p);
+    }
+
+    private static Tags tags(String phase, Class<?> domainType, String operation) {
+        return Tags.of("phase", phase,
+                "domain", domainType != null ? domainType.getSimpleName() : "none",
+                "operation", operation);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.abac_commons;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.repository.core.EntityInformation;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.util.UrlPathHelper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+/**
+ * Updates an entity of a protected repository with one conditional statement per request, instead of the merge,
+ * in-memory attribute checks and re-selects of a Spring Data REST update.
+ *
+ * Opt-in: mapped to PUT and PATCH item requests sent with an X-ABAC-Context header and
+ * {@code X-ABAC-Conditional-Update: true}. Only JSON objects of simple properties are handled here, named as Jackson
+ * names them; PATCH assigns them one by one and PUT must name every assignable property. Other bodies, such as
+ * associations, ignored properties or partial PUTs, are handed back to Spring Data REST unchanged. The version the
+ * update is conditional on is taken from If-Match, or else from the body. Entities locked with Spring Versions are
+ * only updated by their lock owner, the request's principal.
+ *
+ * The entity is not read back: updates answer 204, with the new version as ETag when the update was conditional on
+ * a version. Answers 404 when the entity does not exist or is denied, 409 when it is locked by another principal or,
+ * without If-Match, its version is stale, 412 when it is stale with If-Match, and 400 for bodies that are not JSON
+ * objects or do not convert. Spring Data REST save events are not published and, unlike Spring Data REST, PUT does
+ * not create missing entities.
+ */
+public class AbacUpdateController {
+
+    public static final String CONDITIONAL_UPDATE_HEADER = "X-ABAC-Conditional-Update";
+
+    private static final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private final ABACRouteTable routes;
+    private final AbacUpdates updates;
+
+    public AbacUpdateController(ABACRouteTable routes, AbacUpdates updates) {
+        this.routes = routes;
+        this.updates = updates;
+    }
+
+    public ResponseEntity<Void> update(@PathVariable String repository, @PathVariable String id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                       @RequestBody byte[] body, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+
+        EntityInformation<?, ?> ei = routes.lookup(repository);
+        if (ei == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        JsonNode json;
+        try {
+            json = mapper.readTree(body);
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (json == null || !json.isObject()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Class<?> domainType = ei.getJavaType();
+        Map<String, Object> values = properties(domainType, mapper.convertValue(json, Map.class));
+        if (values == null) {
+            forward(request, response, request.getMethod(), body);
+            return null;
+        }
+
+        Object version = ifMatch != null ? version(ifMatch) : values.get(AbacUpdates.versionProperty(domainType));
+        values.remove(AbacUpdates.versionProperty(domainType));
+        values.remove(AbacUpdates.idProperty(domainType));
+
+        if (!isHandled(domainType, values, HttpMethod.PUT.matches(request.getMethod()))) {
+            forward(request, response, request.getMethod(), body);
+            return null;
+        }
+
+        Principal principal = request.getUserPrincipal();
+        Object newVersion;
+        try {
+            newVersion = updates.update(domainType, conversionService.convert(id, ei.getIdType()), version, principal != null ? principal.getName() : null, values);
+        } catch (IllegalArgumentException | ConversionException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (EmptyResultDataAccessException erdae) {
+            return ResponseEntity.notFound().build();
+        } catch (ObjectOptimisticLockingFailureException oolfe) {
+            return ResponseEntity.status(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build();
+        } catch (PessimisticLockingFailureException plfe) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        ResponseEntity.HeadersBuilder<?> noContent = ResponseEntity.noContent();
+        if (newVersion != null) {
+            noContent.eTag(newVersion.toString());
+        }
+        return noContent.build();
+    }
+
+    /**
+     * @return whether the update can be made by one statement without changing what Spring Data REST would do
+     */
+    static boolean isHandled(Class<?> domainType, Map<String, Object> values, boolean put) {
+        if (values.isEmpty()) {
+            return false;
+        }
+        Set<String> assignable = AbacUpdates.assignable(domainType);
+        return assignable.containsAll(values.keySet()) && (!put || values.keySet().containsAll(assignable));
+    }
+
+    /**
+     * @return the version of an entity tag, as Spring Data REST renders it, e.g. {@code "3"} or {@code W/"3"}
+     */
+    static String version(String etag) {
+        String version = etag.trim();
+        if (version.startsWith("W/")) {
+            version = version.substring(2);
+        }
+        if (version.length() >= 2 && version.startsWith("\"") && version.endsWith("\"")) {
+            version = version.substring(1, version.length() - 1);
+        }
+        return version;
+    }
+
+    /**
+     * @return the values of the body by the properties Jackson deserializes them into, as Spring Data REST does, or
+     *         null when the body names anything Jackson would not deserialize, such as an ignored property
+     */
+    static Map<String, Object> properties(Class<?> domainType, Map<String, Object> body) {
+        Map<String, String> properties = new HashMap<>();
+        BeanDescription description = mapper.getDeserializationConfig().introspect(mapper.constructType(domainType));
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (property.couldDeserialize()) {
+                properties.put(property.getName(), property.getInternalName());
+            }
+        }
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> value : body.entrySet()) {
+            // HAL links and embeds are not properties
+            if (value.getKey().startsWith("_")) {
+                continue;
+            }
+            String property = properties.get(value.getKey());
+            if (property == null) {
+                return null;
+            }
+            values.put(property, value.getValue());
+        }
+        return values;
+    }
+
+    private static void forward(HttpServletRequest request, HttpServletResponse response, String method, byte[] body) throws IOException, ServletException {
+        HttpServletRequest forwarded = new ForwardedRequest(request, method, body, CONDITIONAL_UPDATE_HEADER);
+        request.getRequestDispatcher(urlPathHelper.getPathWithinApplication(request)).forward(forwarded, response);
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.abac_commons;
+
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+import javax.persistence.Version;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+
+import io.micrometer.core.instrument.Timer;
+
+import be.heydari.lib.expressions.BoolPredicate;
+import be.heydari.lib.expressions.Conjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Updates simple properties of an entity visible under the current ABAC context with a single
+ * {@code update ... where id = ? and version = ? and <policy>} statement, without loading it first.
+ *
+ * Statements join the caller's transaction, or run in their own when there is none, and increment numeric
+ * {@link Version versions}. When no row is updated a second query tells a stale version, reported as an optimistic
+ * locking failure, from an entity that does not exist or is denied, reported alike as not found. Updates assigning
+ * a property the policy constrains are checked against the policy after the statement and fail with a
+ * {@link SecurityException}, rolling back, when the entity would leave it. Being bulk statements, they bypass the
+ * persistence context: entity listeners do not apply and entities already loaded are not refreshed. Properties
+ * managed by Spring Content or Spring Versions are never assigned, and entities locked with Spring Versions are only
+ * updated by their lock owner, which the statement checks too.
+ */
+public class AbacUpdates {
+
+    private static final String ENTITY_ALIAS = "entity";
+
+    private static final String CONTENT_PACKAGE = "org.springframework.content.";
+    private static final String VERSIONS_PACKAGE = "org.springframework.versions.";
+    private static final String LOCK_OWNER = VERSIONS_PACKAGE + "LockOwner";
+
+    private static final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    private final EntityManager em;
+    private final PlatformTransactionManager ptm;
+    private final CompiledPolicyCache policyCache;
+    private final AbacMetrics metrics;
+
+    public AbacUpdates(EntityManager em, PlatformTransactionManager ptm, CompiledPolicyCache policyCache, AbacMetrics metrics) {
+        this.em = em;
+        this.ptm = ptm;
+        this.policyCache = policyCache;
+        this.metrics = metrics;
+    }
+
+    public Object update(Class<?> domainType, Object id, Object version, Map<String, Object> values) {
+        return update(domainType, id, version, null, values);
+    }
+
+    /**
+     * @param version the version the update is conditional on, or null to update whatever the current version is
+     * @param principal the name of the principal updating, who may update entities they locked, or null
+     * @param values new values of simple properties, by property name; the id and version cannot be assigned
+     * @return the new version of the entity, or null when the update was not conditional on a version
+     * @throws EmptyResultDataAccessException when the entity does not exist or is denied
+     * @throws ObjectOptimisticLockingFailureException when the entity is visible but its version is not
+     *         {@code version}
+     * @throws PessimisticLockingFailureException when the entity is visible but locked by another principal
+     * @throws IllegalArgumentException when a property is not a simple property that can be assigned
+     */
+    public Object update(Class<?> domainType, Object id, Object version, String principal, Map<String, Object> values) {
+        Assert.notNull(id, "The given id must not be null!");
+        Assert.notEmpty(values, "The given values must not be empty!");
+
+        Timer.Sample sample = metrics.start();
+        try {
+            return new TransactionTemplate(ptm).execute(status -> doUpdate(domainType, id, version, principal, values));
+        } finally {
+            EntityMemo.evict(domainType, id);
+            metrics.stop(sample, AbacMetrics.QUERY, domainType, "update");
+        }
+    }
+
+    private Object doUpdate(Class<?> domainType, Object id, Object version, String principal, Map<String, Object> values) {
+        PathBuilder<?> entityPath = policyCache.entityPath(domainType, ENTITY_ALIAS);
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        Field idField = findField(domainType, Id.class);
+        Assert.notNull(idField, "missing id field");
+        Field versionField = findField(domainType, Version.class);
+
+        JPAUpdateClause update = queryFactory.update(entityPath);
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            PropertyDescriptor pd = assignable(domainType, value.getKey(), idField, versionField);
+            PathBuilder<Object> path = entityPath.get(pd.getName());
+            if (value.getValue() == null) {
+                update.setNull(path);
+            } else {
+                update.set(path, conversionService.convert(value.getValue(), pd.getPropertyType()));
+            }
+        }
+
+        BooleanExpression idExpr = entityPath.get(idField.getName()).eq(id);
+        BooleanExpression where = idExpr;
+        Number expectedVersion = null;
+        if (versionField != null) {
+            Assert.isAssignable(Number.class, versionField.getType(), "only numeric versions can be updated");
+            NumberPath versionPath = entityPath.getNumber(versionField.getName(), (Class) versionField.getType());
+            update.set(versionPath, versionPath.add(1));
+            if (version != null) {
+                expectedVersion = (Number) conversionService.convert(version, versionField.getType());
+                where = where.and(versionPath.eq(expectedVersion));
+            }
+        }
+
+        Field lockOwnerField = findManagedField(domainType, LOCK_OWNER);
+        StringPath lockOwnerPath = null;
+        if (lockOwnerField != null) {
+            lockOwnerPath = entityPath.getString(lockOwnerField.getName());
+            where = where.and(principal != null ? lockOwnerPath.isNull().or(lockOwnerPath.eq(principal)) : lockOwnerPath.isNull());
+        }
+
+        Disjunction abacContext = ABACContext.getCurrentAbacContext();
+        BooleanExpression abacExpr = null;
+        if (abacContext != null) {
+            Timer.Sample sample = metrics.start();
+            abacExpr = policyCache.get(abacContext, domainType, ENTITY_ALIAS);
+            metrics.stop(sample, AbacMetrics.PREDICATE, domainType, "update");
+            where = where.and(abacExpr);
+        }
+
+        if (update.where(where).execute() == 0) {
+            BooleanExpression visible = abacExpr != null ? idExpr.and(abacExpr) : idExpr;
+            if (lockOwnerPath != null) {
+                List<String> lockOwners = queryFactory.select(lockOwnerPath).from(entityPath).where(visible).fetch();
+                if (!lockOwners.isEmpty() && lockOwners.get(0) != null && !lockOwners.get(0).equals(principal)) {
+                    throw new PessimisticLockingFailureException(String.format("%s entity with id %s is locked by %s", domainType.getSimpleName(), id, lockOwners.get(0)));
+                }
+            }
+            if (version != null && queryFactory.selectFrom(entityPath).where(visible).fetchCount() > 0) {
+                throw new ObjectOptimisticLockingFailureException(domainType, id);
+            }
+            throw new EmptyResultDataAccessException(String.format("No %s entity with id %s exists!", domainType, id), 1);
+        }
+
+        if (abacExpr != null && constrains(abacContext, values.keySet())
+                && queryFactory.selectFrom(entityPath).where(idExpr.and(abacExpr)).fetchCount() == 0) {
+            metrics.denied(AbacMetrics.ENFORCE, domainType, "update");
+            throw new SecurityException();
+        }
+
+        return expectedVersion != null ? conversionService.convert(expectedVersion.longValue() + 1, versionField.getType()) : null;
+    }
+
+    /**
+     * @return whether the policy compares any of the properties, or properties nested in them
+     */
+    static boolean constrains(Disjunction policy, Iterable<String> properties) {
+        for (Conjunction conjunction : policy.getConjunctivePredicates()) {
+            for (BoolPredicate predicate : conjunction.getPredicates()) {
+                String column = BoolPredicates.column(predicate);
+                for (String property : properties) {
+                    if (column.equals(property) || column.startsWith(property + ".")) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the properties of the domain type that can be assigned by an update, in declaration order
+     */
+    static Set<String> assignable(Class<?> domainType) {
+        Field idField = findField(domainType, Id.class);
+        Field versionField = findField(domainType, Version.class);
+
+        Set<String> properties = new LinkedHashSet<>();
+        for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(domainType)) {
+            if (isAssignable(domainType, pd, idField, versionField)) {
+                properties.add(pd.getName());
+            }
+        }
+        return properties;
+    }
+
+    static String idProperty(Class<?> domainType) {
+        Field idField = findField(domainType, Id.class);
+        return idField != null ? idField.getName() : null;
+    }
+
+    static String versionProperty(Class<?> domainType) {
+        Field versionField = findField(domainType, Version.class);
+        return versionField != null ? versionField.getName() : null;
+    }
+
+    private static PropertyDescriptor assignable(Class<?> domainType, String property, Field idField, Field versionField) {
+        PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(domainType, property);
+        if (pd == null || !isAssignable(domainType, pd, idField, versionField)) {
+            throw new IllegalArgumentException(String.format("%s is not an assignable property of %s", property, domainType.getSimpleName()));
+        }
+        return pd;
+    }
+
+    private static boolean isAssignable(Class<?> domainType, PropertyDescriptor pd, Field idField, Field versionField) {
+        if (pd.getWriteMethod() == null || !BeanUtils.isSimpleValueType(pd.getPropertyType())
+                || (idField != null && pd.getName().equals(idField.getName()))
+                || (versionField != null && pd.getName().equals(versionField.getName()))) {
+            return false;
+        }
+        Field field = ReflectionUtils.findField(domainType, pd.getName());
+        return field == null || !(isManagedBy(field, CONTENT_PACKAGE) || isManagedBy(field, VERSIONS_PACKAGE));
+    }
+
+    // content ids, lengths, mime types, lock owners and version chains are maintained by their stores, not assigned
+    private static boolean isManagedBy(Field field, String annotationPackage) {
+        for (Annotation annotation : field.getAnnotations()) {
+            if (annotation.annotationType().getName().startsWith(annotationPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the field annotated with the named annotation, without depending on the library defining it
+    private static Field findManagedField(Class<?> domainType, String annotationName) {
+        for (Class<?> type = domainType; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                for (Annotation annotation : field.getAnnotations()) {
+                    if (annotation.annotationType().getName().equals(annotationName)) {
+                        return field;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Field findField(Class<?> domainType, Class annotation) {
+        return org.springframework.content.commons.utils.BeanUtils.findFieldWithAnnotation(domainType, annotation);
+    }
+}
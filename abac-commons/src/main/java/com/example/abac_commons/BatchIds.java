@@ -0,0 +1,83 @@
+package com.example.abac_commons;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.repository.core.EntityInformation;
+
+/**
+ * The ids named by a batch request, converted to the id type of the repository.
+ *
+ * Found entities are matched to requested ids by their typed id, so {@code 01} and {@code 1} name the same
+ * {@code Long} id. Ids are kept in the order they were first requested, as they were spelled.
+ */
+public final class BatchIds {
+
+    private static final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    private final Map<Object, String> ids;
+
+    private BatchIds(Map<Object, String> ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * @throws IllegalArgumentException when an id does not convert to the id type
+     */
+    public static BatchIds of(Collection<String> requested, Class<?> idType) {
+        Map<Object, String> ids = new LinkedHashMap<>();
+        for (String id : requested) {
+            Object typedId;
+            try {
+                typedId = conversionService.convert(id, idType);
+            } catch (ConversionException e) {
+                throw new IllegalArgumentException(String.format("Invalid id: %s", id), e);
+            }
+            if (typedId == null) {
+                throw new IllegalArgumentException(String.format("Invalid id: %s", id));
+            }
+            ids.putIfAbsent(typedId, id);
+        }
+        return new BatchIds(ids);
+    }
+
+    public boolean isEmpty() {
+        return ids.isEmpty();
+    }
+
+    public List<Object> typed() {
+        return new ArrayList<>(ids.keySet());
+    }
+
+    /**
+     * @return the found entities in the order their ids were requested, and the requested ids that were not found
+     */
+    public Map<String, Object> result(Iterable<?> found, EntityInformation ei) {
+        Map<Object, Object> byId = new LinkedHashMap<>();
+        for (Object entity : found) {
+            byId.put(ei.getId(entity), entity);
+        }
+
+        List<Object> content = new ArrayList<>(byId.size());
+        List<String> unavailable = new ArrayList<>();
+        for (Map.Entry<Object, String> id : ids.entrySet()) {
+            Object entity = byId.get(id.getKey());
+            if (entity != null) {
+                content.add(entity);
+            } else {
+                unavailable.add(id.getValue());
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("content", content);
+        result.put("unavailable", unavailable);
+        return result;
+    }
+}
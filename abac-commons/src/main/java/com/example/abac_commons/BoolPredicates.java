@@ -0,0 +1,134 @@
+package com.example.abac_commons;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.mapping.PropertyPath;
+
+import be.heydari.lib.converters.jpql.JPQLUtils;
+import be.heydari.lib.expressions.BoolPredicate;
+import be.heydari.lib.expressions.Conjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Accessors for the parts of a residual policy, and the typed values of its constants.
+ *
+ * Policy constants arrive as strings using Java literal suffixes for non-int numbers (e.g. 5L, 1.5f).
+ */
+public final class BoolPredicates {
+
+    private static final String ALIAS = "e";
+
+    private static final Set<String> JPQL_COMPARISONS = new HashSet<>(Arrays.asList("=", "<>", "<", "<=", ">", ">="));
+
+    // abac-lib operator -> the JPQL comparison it renders to, or empty when it is not a simple comparison
+    private static final Map<Object, Optional<String>> COMPARISONS = new ConcurrentHashMap<>();
+
+    private static final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    private BoolPredicates() {}
+
+    public static String column(BoolPredicate predicate) {
+        return predicate.getLeft().getColumn();
+    }
+
+    public static String value(BoolPredicate predicate) {
+        return String.valueOf(predicate.getRight().getValue());
+    }
+
+    public static String operator(BoolPredicate predicate) {
+        return String.valueOf(predicate.getOperator());
+    }
+
+    public static boolean isEquality(BoolPredicate predicate) {
+        return "=".equals(comparison(predicate));
+    }
+
+    /**
+     * @return the JPQL comparison operator of the predicate, as abac-lib renders it, or null if it is not a simple
+     *         comparison
+     */
+    public static String comparison(BoolPredicate predicate) {
+        Object operator = predicate.getOperator();
+        if (operator == null) {
+            return null;
+        }
+        return COMPARISONS.computeIfAbsent(operator, o -> Optional.ofNullable(renderedComparison(predicate))).orElse(null);
+    }
+
+    // the operator following the column in abac-lib's JPQL for the predicate alone, e.g. e.size >= 10
+    private static String renderedComparison(BoolPredicate predicate) {
+        String jpql = JPQLUtils.from(disjunction(Collections.singletonList(conjunction(Collections.singletonList(predicate)))), ALIAS);
+        String path = ALIAS + "." + column(predicate);
+
+        int i = jpql.indexOf(path);
+        if (i < 0) {
+            return null;
+        }
+        i += path.length();
+        while (i < jpql.length() && Character.isWhitespace(jpql.charAt(i))) {
+            i++;
+        }
+        int start = i;
+        while (i < jpql.length() && "=<>!".indexOf(jpql.charAt(i)) >= 0) {
+            i++;
+        }
+        String comparison = jpql.substring(start, i);
+        return JPQL_COMPARISONS.contains(comparison) ? comparison : null;
+    }
+
+    /**
+     * @return a key identifying the predicate by column, operator and value
+     */
+    public static String key(BoolPredicate predicate) {
+        return column(predicate) + '\u0000' + operator(predicate) + '\u0000' + value(predicate);
+    }
+
+    public static Class<?> constantType(String s) {
+        return constant(s).getClass();
+    }
+
+    public static Object constant(String s) {
+        try {
+            if (s.endsWith("L")) {
+                return Long.parseLong(s.substring(0, s.length() - 1));
+            } else if (s.endsWith("f")) {
+                return Float.parseFloat(s.substring(0, s.length() - 1));
+            } else if (s.endsWith("d")) {
+                return Double.parseDouble(s.substring(0, s.length() - 1));
+            } else {
+                return Integer.parseInt(s);
+            }
+        } catch (NumberFormatException nfe) {
+            return s;
+        }
+    }
+
+    public static Object typedValue(BoolPredicate predicate, Class<?> targetType) {
+        return conversionService.convert(constant(value(predicate)), targetType);
+    }
+
+    public static Class<?> propertyType(Class<?> domainType, String column) {
+        return PropertyPath.from(column, domainType).getLeafProperty().getType();
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static Conjunction conjunction(Collection<BoolPredicate> predicates) {
+        return new Conjunction((List) new ArrayList<>(predicates));
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static Disjunction disjunction(Collection<Conjunction> conjunctions) {
+        return new Disjunction((List) new ArrayList<>(conjunctions));
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.abac_commons;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.Assert;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.querydsl.core.types.ConstantImpl;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.PathBuilder;
+
+import be.heydari.lib.converters.querydsl.QueryDslUtils;
+import be.heydari.lib.expressions.BoolPredicate;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Caches the QueryDSL expression compiled from a residual policy for a given domain type and alias.
+ *
+ * QueryDSL expressions are immutable so a compiled expression can be shared by every request presenting
+ * the same policy. Policies are normalized first and equality chains on a single column are compiled to one
+ * {@code in} expression.
+ *
+ * Expressions are compiled from a {@link Template} per {@link PolicyShape}, holding the resolved paths and
+ * property types of its slots, so a policy differing from a cached one only in its constants is compiled by
+ * binding its constants to the template.
+ *
+ * A policy without conjunctions allows nothing and is compiled to an expression that never holds, never to
+ * {@code null}, so callers cannot drop the restriction by mistake. A policy with an empty conjunction allows
+ * everything and is compiled to an expression that always holds.
+ */
+public class CompiledPolicyCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+    /** the expression compiled from a policy allowing nothing */
+    public static final BooleanExpression DENY_ALL = Expressions.FALSE.isTrue();
+
+    /** the expression compiled from a policy allowing everything */
+    public static final BooleanExpression ALLOW_ALL = Expressions.TRUE.isTrue();
+
+    private final Cache<Key, BooleanExpression> cache;
+    private final Cache<Key, Template> templates;
+    private final Map<Key, PathBuilder> entityPaths = new ConcurrentHashMap<>();
+
+    public CompiledPolicyCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public CompiledPolicyCache(long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        this.templates = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public PathBuilder entityPath(Class<?> domainType, String alias) {
+        return entityPaths.computeIfAbsent(new Key(null, domainType, alias), k -> new PathBuilder(domainType, alias));
+    }
+
+    public BooleanExpression get(Disjunction policy, Class<?> domainType, String alias) {
+        Assert.notNull(policy, "policy must not be null");
+
+        Key key = new Key(PolicyFingerprint.of(policy), domainType, alias);
+        return cache.get(key, k -> compile(policy, domainType, alias));
+    }
+
+    public void invalidate(Disjunction policy) {
+        invalidate(PolicyFingerprint.of(policy));
+    }
+
+    public void invalidate(String fingerprint) {
+        cache.asMap().keySet().removeIf(key -> key.fingerprint.equals(fingerprint));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public void invalidateTemplates() {
+        templates.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public CacheStats templateStats() {
+        return templates.stats();
+    }
+
+    public BooleanExpression compile(Disjunction policy, Class<?> domainType, String alias) {
+        PolicyShape shape = PolicyShape.of(DisjunctionNormalizer.normalize(policy));
+
+        if (shape.isUnconditional()) {
+            return ALLOW_ALL;
+        }
+        if (shape.isEmpty()) {
+            return DENY_ALL;
+        }
+
+        Template template = templates.get(new Key(shape.getKey(), domainType, alias), k -> new Template(shape, entityPath(domainType, alias), domainType));
+        BooleanExpression abacExpr = template.bind(shape);
+        return abacExpr != null ? abacExpr : DENY_ALL;
+    }
+
+    private static BooleanExpression or(BooleanExpression left, BooleanExpression right) {
+        return left == null ? right : left.or(right);
+    }
+
+    /**
+     * The paths and property types of the slots of a policy shape, for a domain type and alias.
+     */
+    private static final class Template {
+
+        private final PathBuilder entityPath;
+        private final Class<?> domainType;
+        private final Map<String, PathBuilder> paths = new HashMap<>();
+        private final Map<String, Class<?>> types = new HashMap<>();
+
+        Template(PolicyShape shape, PathBuilder entityPath, Class<?> domainType) {
+            this.entityPath = entityPath;
+            this.domainType = domainType;
+
+            for (PolicyShape.Slot slot : shape.getMemberships()) {
+                resolve(slot.getColumn());
+            }
+            for (List<PolicyShape.Slot> conjunction : shape.getConjunctions()) {
+                for (PolicyShape.Slot slot : conjunction) {
+                    resolve(slot.getColumn());
+                }
+            }
+        }
+
+        private void resolve(String column) {
+            if (paths.containsKey(column)) {
+                return;
+            }
+
+            PathBuilder path = entityPath;
+            for (String segment : column.split("\\.")) {
+                path = path.get(segment);
+            }
+            paths.put(column, path);
+            types.put(column, BoolPredicates.propertyType(domainType, column));
+        }
+
+        BooleanExpression bind(PolicyShape shape) {
+            BooleanExpression abacExpr = null;
+            for (PolicyShape.Slot slot : shape.getMemberships()) {
+                Class<?> type = types.get(slot.getColumn());
+
+                List<Object> values = new ArrayList<>(slot.getPredicates().size());
+                for (BoolPredicate predicate : slot.getPredicates()) {
+                    values.add(BoolPredicates.typedValue(predicate, type));
+                }
+                abacExpr = or(abacExpr, paths.get(slot.getColumn()).in(values));
+            }
+            for (List<PolicyShape.Slot> conjunction : shape.getConjunctions()) {
+                BooleanExpression[] comparisons = new BooleanExpression[conjunction.size()];
+                for (int i = 0; i < comparisons.length; i++) {
+                    PolicyShape.Slot slot = conjunction.get(i);
+                    Object value = BoolPredicates.typedValue(slot.getPredicates().get(0), types.get(slot.getColumn()));
+                    comparisons[i] = Expressions.booleanOperation(operator(slot.getOperator()), paths.get(slot.getColumn()), ConstantImpl.create(value));
+                }
+                abacExpr = or(abacExpr, Expressions.allOf(comparisons));
+            }
+            if (shape.getRemainder() != null) {
+                abacExpr = or(abacExpr, QueryDslUtils.from(shape.getRemainder(), entityPath, domainType));
+            }
+            return abacExpr;
+        }
+
+        private static Operator operator(String comparison) {
+            switch (comparison) {
+                case "=":
+                    return Ops.EQ;
+                case "<>":
+                    return Ops.NE;
+                case "<":
+                    return Ops.LT;
+                case "<=":
+                    return Ops.LOE;
+                case ">":
+                    return Ops.GT;
+                case ">=":
+                    return Ops.GOE;
+                default:
+                    throw new IllegalArgumentException(String.format("Unsupported comparison: %s", comparison));
+            }
+        }
+    }
+
+    private static final class Key {
+
+        private final String fingerprint;
+        private final Class<?> domainType;
+        private final String alias;
+
+        Key(String fingerprint, Class<?> domainType, String alias) {
+            this.fingerprint = fingerprint;
+            this.domainType = domainType;
+            this.alias = alias;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Objects.equals(fingerprint, other.fingerprint)
+                    && domainType.equals(other.domainType)
+                    && alias.equals(other.alias);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fingerprint, domainType, alias);
+        }
+    }
+}
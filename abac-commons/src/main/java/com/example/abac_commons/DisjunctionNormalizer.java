@@ -0,0 +1,125 @@
+package com.example.abac_commons;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import be.heydari.lib.expressions.BoolPredicate;
+import be.heydari.lib.expressions.Conjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Simplifies residual policies before they are converted into queries.
+ *
+ * {@link #normalize(Disjunction)} removes duplicate predicates and conjunctions, drops conjunctions subsumed by a
+ * less restrictive one (a OR (a AND b) is a) and orders what remains canonically, so equivalent policies convert
+ * to the same query and share cache entries.
+ *
+ * {@link #factor(Disjunction)} additionally groups single-predicate equality conjunctions on the same column
+ * (broker.id == 1 OR broker.id == 2 ...) so converters can emit a single set membership test instead.
+ */
+public final class DisjunctionNormalizer {
+
+    private DisjunctionNormalizer() {}
+
+    public static Disjunction normalize(Disjunction policy) {
+
+        if (policy == null) {
+            return null;
+        }
+
+        // dedupe predicates within each conjunction, and conjunctions by their predicate sets
+        Map<TreeSet<String>, Conjunction> conjunctions = new LinkedHashMap<>();
+        for (Conjunction conjunction : policy.getConjunctivePredicates()) {
+
+            Map<String, BoolPredicate> predicates = new TreeMap<>();
+            for (BoolPredicate predicate : conjunction.getPredicates()) {
+                predicates.putIfAbsent(BoolPredicates.key(predicate), predicate);
+            }
+
+            conjunctions.putIfAbsent(new TreeSet<>(predicates.keySet()), BoolPredicates.conjunction(predicates.values()));
+        }
+
+        // least restrictive first, so each conjunction only needs checking against those already kept
+        List<TreeSet<String>> candidates = new ArrayList<>(conjunctions.keySet());
+        Collections.sort(candidates, Comparator.<TreeSet<String>>comparingInt(TreeSet::size).thenComparing(Object::toString));
+
+        List<TreeSet<String>> kept = new ArrayList<>();
+        for (TreeSet<String> candidate : candidates) {
+            boolean subsumed = false;
+            for (TreeSet<String> k : kept) {
+                if (candidate.containsAll(k)) {
+                    subsumed = true;
+                    break;
+                }
+            }
+            if (!subsumed) {
+                kept.add(candidate);
+            }
+        }
+
+        List<Conjunction> normalized = new ArrayList<>(kept.size());
+        for (TreeSet<String> k : kept) {
+            normalized.add(conjunctions.get(k));
+        }
+        return BoolPredicates.disjunction(normalized);
+    }
+
+    public static FactoredDisjunction factor(Disjunction policy) {
+
+        Map<String, List<BoolPredicate>> byColumn = new TreeMap<>();
+        List<Conjunction> others = new ArrayList<>();
+
+        for (Conjunction conjunction : policy.getConjunctivePredicates()) {
+            List<BoolPredicate> predicates = conjunction.getPredicates();
+            if (predicates.size() == 1 && BoolPredicates.isEquality(predicates.get(0))) {
+                BoolPredicate predicate = predicates.get(0);
+                byColumn.computeIfAbsent(BoolPredicates.column(predicate), k -> new ArrayList<>()).add(predicate);
+            } else {
+                others.add(conjunction);
+            }
+        }
+
+        Map<String, List<BoolPredicate>> memberships = new LinkedHashMap<>();
+        for (Map.Entry<String, List<BoolPredicate>> entry : byColumn.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                memberships.put(entry.getKey(), entry.getValue());
+            } else {
+                others.add(BoolPredicates.conjunction(entry.getValue()));
+            }
+        }
+
+        return new FactoredDisjunction(memberships, BoolPredicates.disjunction(others));
+    }
+
+    /**
+     * A policy split into set memberships (column IN values) and the remaining conjunctions, all or'ed together.
+     */
+    public static final class FactoredDisjunction {
+
+        private final Map<String, List<BoolPredicate>> memberships;
+        private final Disjunction remainder;
+
+        FactoredDisjunction(Map<String, List<BoolPredicate>> memberships, Disjunction remainder) {
+            this.memberships = Collections.unmodifiableMap(memberships);
+            this.remainder = remainder;
+        }
+
+        public Map<String, List<BoolPredicate>> getMemberships() {
+            return memberships;
+        }
+
+        public Disjunction getRemainder() {
+            return remainder;
+        }
+
+        public boolean hasRemainder() {
+            return !remainder.getConjunctivePredicates().isEmpty();
+        }
+    }
+}
@@ -1,10 +1,10 @@
-package com.example.abac_spike;
+package com.example.abac_commons;
 
 import org.springframework.data.repository.core.EntityInformation;
 
 public class EntityContext {
 
-    private static ThreadLocal<EntityInformation> currentEntityContext = new InheritableThreadLocal<EntityInformation>();
+    private static ThreadLocal<EntityInformation> currentEntityContext = new ThreadLocal<EntityInformation>();
 
     public static EntityInformation getCurrentEntityContext() {
         return currentEntityContext.get();
@@ -15,6 +15,6 @@ public class EntityContext {
     }
 
     public static void clear() {
-        currentEntityContext.set(null);
+        currentEntityContext.remove();
     }
 }
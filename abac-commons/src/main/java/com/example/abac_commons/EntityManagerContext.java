@@ -1,4 +1,4 @@
-package org.springframework.data.querydsl;
+package com.example.abac_commons;
 
 import javax.persistence.EntityManager;
 
@@ -9,7 +9,7 @@ import lombok.Getter;
 @Getter
 public class EntityManagerContext {
 
-    private static ThreadLocal<EntityManagerContext> currentEntityContext = new InheritableThreadLocal<EntityManagerContext>();
+    private static ThreadLocal<EntityManagerContext> currentEntityContext = new ThreadLocal<EntityManagerContext>();
     private EntityManager em;
     private PlatformTransactionManager tm;
 
@@ -26,7 +26,11 @@ public class EntityManagerContext {
         currentEntityContext.set(new EntityManagerContext(em, tm));
     }
 
+    public static void setCurrentEntityContext(EntityManagerContext context) {
+        currentEntityContext.set(context);
+    }
+
     public static void clear() {
-        currentEntityContext.set(null);
+        currentEntityContext.remove();
     }
 }
@@ -0,0 +1,115 @@
+package com.example.abac_commons;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Request scoped memo of policy-checked lookups by id, so that one request reads an entity under a policy at most
+ * once.
+ *
+ * Spring Data REST looks an entity up more than once per request, e.g. before deleting or replacing it, and content
+ * endpoints look up the entity and then access its content. Lookups are memoized by domain type, id and policy
+ * fingerprint, and by any further filter the lookup applied, including lookups that found nothing, and writes
+ * through the ABAC paths evict what they may have changed. The memo is a plain thread local, active only between
+ * {@link #begin()} and {@link #clear()}, which the ABAC filter calls around each request; lookups on other threads,
+ * or outside a request, are not memoized.
+ */
+public final class EntityMemo {
+
+    private static ThreadLocal<Map<Key, Optional<Object>>> currentEntityMemo = new ThreadLocal<>();
+
+    private EntityMemo() {}
+
+    public static void begin() {
+        currentEntityMemo.set(new HashMap<>());
+    }
+
+    public static void clear() {
+        currentEntityMemo.remove();
+    }
+
+    /**
+     * @return the entity looked up by id under the policy earlier in this request, empty if none was found, or
+     *         null when it has not been looked up or no memo is active
+     */
+    public static Optional<Object> get(Class<?> domainType, Object id, Disjunction policy) {
+        return get(domainType, id, policy, null);
+    }
+
+    /**
+     * As {@link #get(Class, Object, Disjunction)}, for lookups that also applied a filter, e.g. a querydsl predicate;
+     * the filter must implement value equality.
+     */
+    public static Optional<Object> get(Class<?> domainType, Object id, Disjunction policy, Object filter) {
+        Map<Key, Optional<Object>> memo = currentEntityMemo.get();
+        return memo != null ? memo.get(new Key(domainType, id, PolicyFingerprint.of(policy), filter)) : null;
+    }
+
+    public static void put(Class<?> domainType, Object id, Disjunction policy, Optional<?> entity) {
+        put(domainType, id, policy, null, entity);
+    }
+
+    public static void put(Class<?> domainType, Object id, Disjunction policy, Object filter, Optional<?> entity) {
+        Map<Key, Optional<Object>> memo = currentEntityMemo.get();
+        if (memo != null) {
+            memo.put(new Key(domainType, id, PolicyFingerprint.of(policy), filter), entity.map(Object.class::cast));
+        }
+    }
+
+    /**
+     * Forgets the lookups of an entity under every policy, after it was written.
+     */
+    public static void evict(Class<?> domainType, Object id) {
+        Map<Key, Optional<Object>> memo = currentEntityMemo.get();
+        if (memo != null) {
+            memo.keySet().removeIf(key -> key.domainType == domainType && key.id.equals(id));
+        }
+    }
+
+    /**
+     * Forgets the lookups of every entity of a domain type, after writes whose ids are not known.
+     */
+    public static void evict(Class<?> domainType) {
+        Map<Key, Optional<Object>> memo = currentEntityMemo.get();
+        if (memo != null) {
+            memo.keySet().removeIf(key -> key.domainType == domainType);
+        }
+    }
+
+    private static final class Key {
+
+        private final Class<?> domainType;
+        private final Object id;
+        private final String policy;
+        private final Object filter;
+
+        Key(Class<?> domainType, Object id, String policy, Object filter) {
+            this.domainType = domainType;
+            this.id = id;
+            this.policy = policy;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return domainType == key.domainType && id.equals(key.id) && policy.equals(key.policy)
+                    && Objects.equals(filter, key.filter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(domainType, id, policy, filter);
+        }
+    }
+}
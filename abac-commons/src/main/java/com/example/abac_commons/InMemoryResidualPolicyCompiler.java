@@ -0,0 +1,28 @@
+package com.example.abac_commons;
+
+import java.util.List;
+import java.util.Map;
+
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Acquires residual policies from an in-process {@link RegoPartialEvaluator}. Useful in tests and wherever the
+ * policy bundle can be shipped with the application.
+ */
+public class InMemoryResidualPolicyCompiler implements ResidualPolicyCompiler {
+
+    private final RegoPartialEvaluator evaluator;
+    private final String query;
+    private final List<String> unknowns;
+
+    public InMemoryResidualPolicyCompiler(RegoPartialEvaluator evaluator, String query, List<String> unknowns) {
+        this.evaluator = evaluator;
+        this.query = query;
+        this.unknowns = unknowns;
+    }
+
+    @Override
+    public Disjunction compile(Map<String, Object> input) {
+        return DisjunctionNormalizer.normalize(evaluator.compile(query, input, unknowns));
+    }
+}
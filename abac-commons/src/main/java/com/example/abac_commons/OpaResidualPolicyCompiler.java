@@ -0,0 +1,44 @@
+package com.example.abac_commons;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.web.client.RestTemplate;
+
+import be.heydari.AstWalker;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Acquires residual policies from an OPA server's /v1/compile API.
+ */
+public class OpaResidualPolicyCompiler implements ResidualPolicyCompiler {
+
+    private final RestTemplate restTemplate;
+    private final String opaUrl;
+    private final String query;
+    private final List<String> unknowns;
+
+    public OpaResidualPolicyCompiler(String opaUrl, String query, List<String> unknowns) {
+        this(new RestTemplate(), opaUrl, query, unknowns);
+    }
+
+    public OpaResidualPolicyCompiler(RestTemplate restTemplate, String opaUrl, String query, List<String> unknowns) {
+        this.restTemplate = restTemplate;
+        this.opaUrl = opaUrl;
+        this.query = query;
+        this.unknowns = unknowns;
+    }
+
+    @Override
+    public Disjunction compile(Map<String, Object> input) {
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("query", query);
+        request.put("input", input);
+        request.put("unknowns", unknowns);
+
+        String residualPolicy = restTemplate.postForObject(opaUrl + "/v1/compile", request, String.class);
+        return DisjunctionNormalizer.normalize(AstWalker.walk(residualPolicy));
+    }
+}
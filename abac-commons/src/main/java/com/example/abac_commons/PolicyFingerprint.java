@@ -0,0 +1,49 @@
+package com.example.abac_commons;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import be.heydari.lib.converters.protobuf.ProtobufUtils;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Canonical fingerprint of a residual policy, used to key caches of artifacts compiled from that policy.
+ *
+ * Fingerprints are memoized per {@link Disjunction} instance so that the shared instances handed out by
+ * {@link ABACContextDecoder} are only ever hashed once.
+ */
+public final class PolicyFingerprint {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final Cache<Disjunction, String> fingerprints = Caffeine.newBuilder()
+            .weakKeys()
+            .build();
+
+    private PolicyFingerprint() {}
+
+    public static String of(Disjunction policy) {
+        return fingerprints.get(policy, PolicyFingerprint::compute);
+    }
+
+    static String compute(Disjunction policy) {
+        byte[] bytes = ProtobufUtils.from(policy, "").toByteArray();
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
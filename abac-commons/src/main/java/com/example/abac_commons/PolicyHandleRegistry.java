@@ -0,0 +1,118 @@
+package com.example.abac_commons;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.util.Assert;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Registry of decoded residual policies addressable by compact, signed handles.
+ *
+ * A handle has the form {@code <id>.<signature>}, where the id is derived from the policy fingerprint and the
+ * signature is a truncated HMAC-SHA256 of the id. Handles contain a '.' and so can never be mistaken for a
+ * Base64 encoded policy. The registry is in-memory, bounded by size and expires idle entries; clients re-register
+ * when a handle is no longer recognized.
+ */
+public class PolicyHandleRegistry {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+    public static final Duration DEFAULT_EXPIRE_AFTER_ACCESS = Duration.ofMinutes(30);
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int ID_LENGTH = 22;
+    private static final int SIGNATURE_BYTES = 16;
+
+    private final Cache<String, Disjunction> policies;
+    private final SecretKeySpec key;
+
+    public PolicyHandleRegistry() {
+        this(randomKey(), DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRE_AFTER_ACCESS);
+    }
+
+    public PolicyHandleRegistry(byte[] key, long maximumSize, Duration expireAfterAccess) {
+        Assert.isTrue(key != null && key.length >= 32, "key must be at least 256 bits");
+
+        this.key = new SecretKeySpec(key, HMAC_ALGORITHM);
+        this.policies = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+    }
+
+    public static boolean isHandle(String value) {
+        return value.indexOf('.') != -1;
+    }
+
+    public String register(Disjunction policy) {
+        String id = toId(PolicyFingerprint.of(policy));
+        policies.put(id, policy);
+        return id + "." + sign(id);
+    }
+
+    /**
+     * @return the registered policy, or null if the handle is forged, unknown or expired
+     */
+    public Disjunction resolve(String handle) {
+
+        int dot = handle.indexOf('.');
+        if (dot != ID_LENGTH) {
+            return null;
+        }
+
+        String id = handle.substring(0, dot);
+        byte[] signature = handle.substring(dot + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(signature, sign(id).getBytes(StandardCharsets.US_ASCII))) {
+            return null;
+        }
+
+        return policies.getIfPresent(id);
+    }
+
+    public void invalidateAll() {
+        policies.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return policies.stats();
+    }
+
+    private static String toId(String fingerprint) {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(fingerprint.substring(i * 2, i * 2 + 2), 16);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private String sign(String id) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            byte[] signature = mac.doFinal(id.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(signature, SIGNATURE_BYTES));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("unable to sign policy handle", e);
+        }
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.abac_commons;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Derives the policy input for a request, for when residual policies are acquired server-side.
+ */
+public interface PolicyInputResolver {
+
+    /**
+     * @return the policy input, or null when none can be derived, e.g. without a principal, and the request must
+     * be refused
+     */
+    Map<String, Object> resolve(HttpServletRequest request);
+}
@@ -0,0 +1,164 @@
+package com.example.abac_commons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import be.heydari.lib.expressions.BoolPredicate;
+import be.heydari.lib.expressions.Conjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Compiles a residual policy into a {@link Predicate} telling whether an entity in hand satisfies it, without a
+ * query.
+ *
+ * The predicate is the disjunction of the policy's conjunctions of comparisons and short circuits both ways.
+ * Constants are converted to the property types once, when compiled, and compared as the SQL translators do: with
+ * {@code compareTo} for comparable values, so that e.g. 1.0 and 1.00 are equal, and with SQL null semantics, so
+ * that no comparison holds for a null property or a property path through a null association, which an inner join
+ * would drop. Strings compare case sensitively, as under a binary collation. Empty and unconditional policies,
+ * as told by {@link PolicyShape}, never and always hold, as their SQL translations do. Compiled predicates are
+ * held weakly with the decoded policy.
+ */
+public final class PolicyPredicates {
+
+    private static final Cache<Disjunction, Map<Class<?>, Predicate<Object>>> predicates = Caffeine.newBuilder()
+            .weakKeys()
+            .build();
+
+    // cached for policies that cannot be evaluated in memory
+    private static final Predicate<Object> UNCOMPILABLE = entity -> false;
+
+    private static final Predicate<Object> DENY_ALL = entity -> false;
+    private static final Predicate<Object> ALLOW_ALL = entity -> true;
+
+    private PolicyPredicates() {}
+
+    /**
+     * @return the policy as a predicate over entities of the domain type, or null when it has predicates other than
+     *         simple comparisons, or on properties the domain type does not have, which cannot be evaluated in memory
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Predicate<T> of(Disjunction policy, Class<T> domainType) {
+        Predicate<Object> predicate = predicates.get(policy, p -> new ConcurrentHashMap<>()).computeIfAbsent(domainType, type -> compile(policy, type));
+        return predicate != UNCOMPILABLE ? (Predicate<T>) predicate : null;
+    }
+
+    private static Predicate<Object> compile(Disjunction policy, Class<?> domainType) {
+        PolicyShape shape = PolicyShape.of(policy);
+        if (shape.isUnconditional()) {
+            return ALLOW_ALL;
+        }
+        if (shape.isEmpty()) {
+            return DENY_ALL;
+        }
+
+        List<Comparison[]> conjunctions = new ArrayList<>();
+        for (Conjunction conjunction : policy.getConjunctivePredicates()) {
+            List<Comparison> comparisons = new ArrayList<>();
+            for (BoolPredicate predicate : conjunction.getPredicates()) {
+                Comparison comparison = comparison(predicate, domainType);
+                if (comparison == null) {
+                    return UNCOMPILABLE;
+                }
+                comparisons.add(comparison);
+            }
+            conjunctions.add(comparisons.toArray(new Comparison[0]));
+        }
+        return new Compiled(conjunctions.toArray(new Comparison[0][]));
+    }
+
+    private static Comparison comparison(BoolPredicate predicate, Class<?> domainType) {
+        String operator = BoolPredicates.comparison(predicate);
+        PropertyAccessor accessor = PropertyAccessor.of(domainType, BoolPredicates.column(predicate));
+        if (operator == null || accessor == null) {
+            return null;
+        }
+
+        Object constant = BoolPredicates.typedValue(predicate, accessor.getType());
+        if (!"=".equals(operator) && !"<>".equals(operator) && !(constant instanceof Comparable)) {
+            return null;
+        }
+        return new Comparison(accessor, operator, constant);
+    }
+
+    private static final class Compiled implements Predicate<Object> {
+
+        private final Comparison[][] conjunctions;
+
+        Compiled(Comparison[][] conjunctions) {
+            this.conjunctions = conjunctions;
+        }
+
+        @Override
+        public boolean test(Object entity) {
+            for (Comparison[] conjunction : conjunctions) {
+                if (all(conjunction, entity)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean all(Comparison[] conjunction, Object entity) {
+            for (Comparison comparison : conjunction) {
+                if (!comparison.test(entity)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Comparison {
+
+        private final PropertyAccessor accessor;
+        private final String operator;
+        private final Object constant;
+
+        Comparison(PropertyAccessor accessor, String operator, Object constant) {
+            this.accessor = accessor;
+            this.operator = operator;
+            this.constant = constant;
+        }
+
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        boolean test(Object entity) {
+            Object value = accessor.get(entity);
+            if (value == null || value == PropertyAccessor.ABSENT || constant == null) {
+                return false;
+            }
+
+            int order;
+            if (constant instanceof Comparable && constant.getClass().isInstance(value)) {
+                order = ((Comparable) value).compareTo(constant);
+            } else if (constant.equals(value)) {
+                order = 0;
+            } else if ("<>".equals(operator)) {
+                return true;
+            } else {
+                return false;
+            }
+
+            switch (operator) {
+            case "=":
+                return order == 0;
+            case "<>":
+                return order != 0;
+            case "<":
+                return order < 0;
+            case "<=":
+                return order <= 0;
+            case ">":
+                return order > 0;
+            default:
+                return order >= 0;
+            }
+        }
+    }
+}
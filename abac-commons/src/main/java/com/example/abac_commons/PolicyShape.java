@@ -0,0 +1,176 @@
+package com.example.abac_commons;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import be.heydari.lib.expressions.BoolPredicate;
+import be.heydari.lib.expressions.Conjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * The structure of a residual policy without its constants.
+ *
+ * Policies are factored into set memberships and conjunctions of comparisons, each of which is a slot taking the
+ * constants of its predicates. Policies that only differ in their constants have the same {@link #getKey() key},
+ * so a query compiled for one can be reused for the other by binding its slots. Conjunctions with predicates that
+ * are not simple comparisons cannot be bound and are kept as a remainder, which is part of the key.
+ *
+ * Two policies have no slots at all: one without conjunctions, which is {@link #isEmpty() empty} and allows
+ * nothing, and one with an empty conjunction, OPA's {@code [[]]}, which is {@link #isUnconditional() unconditional}
+ * and allows everything. Translators must map these to conditions that never and always hold.
+ */
+public final class PolicyShape {
+
+    public static final String IN = "in";
+
+    private static final PolicyShape UNCONDITIONAL = new PolicyShape("true;", Collections.emptyList(), Collections.emptyList(), null, true);
+
+    private static final Cache<Disjunction, PolicyShape> shapes = Caffeine.newBuilder()
+            .weakKeys()
+            .build();
+
+    private final String key;
+    private final List<Slot> memberships;
+    private final List<List<Slot>> conjunctions;
+    private final Disjunction remainder;
+    private final boolean unconditional;
+
+    private PolicyShape(String key, List<Slot> memberships, List<List<Slot>> conjunctions, Disjunction remainder, boolean unconditional) {
+        this.key = key;
+        this.memberships = memberships;
+        this.conjunctions = conjunctions;
+        this.remainder = remainder;
+        this.unconditional = unconditional;
+    }
+
+    public static PolicyShape of(Disjunction policy) {
+        return shapes.get(policy, PolicyShape::compute);
+    }
+
+    static PolicyShape compute(Disjunction policy) {
+        for (Conjunction conjunction : policy.getConjunctivePredicates()) {
+            if (conjunction.getPredicates().isEmpty()) {
+                return UNCONDITIONAL;
+            }
+        }
+
+        DisjunctionNormalizer.FactoredDisjunction factored = DisjunctionNormalizer.factor(policy);
+        StringBuilder key = new StringBuilder();
+
+        List<Slot> memberships = new ArrayList<>();
+        for (Map.Entry<String, List<BoolPredicate>> membership : factored.getMemberships().entrySet()) {
+            memberships.add(new Slot(membership.getKey(), IN, membership.getValue()));
+            key.append(membership.getKey()).append(" in ?;");
+        }
+
+        List<List<Slot>> conjunctions = new ArrayList<>();
+        Disjunction remainder = null;
+        if (isComparisons(factored.getRemainder())) {
+            for (Conjunction conjunction : factored.getRemainder().getConjunctivePredicates()) {
+                List<Slot> comparisons = new ArrayList<>();
+                for (BoolPredicate predicate : conjunction.getPredicates()) {
+                    Slot slot = new Slot(BoolPredicates.column(predicate), BoolPredicates.comparison(predicate), Collections.singletonList(predicate));
+                    comparisons.add(slot);
+                    key.append(slot.getColumn()).append(' ').append(slot.getOperator()).append(" ?,");
+                }
+                conjunctions.add(comparisons);
+                key.append(';');
+            }
+        } else {
+            remainder = factored.getRemainder();
+            key.append(PolicyFingerprint.of(remainder));
+        }
+
+        return new PolicyShape(key.toString(), memberships, conjunctions, remainder, false);
+    }
+
+    private static boolean isComparisons(Disjunction policy) {
+        for (Conjunction conjunction : policy.getConjunctivePredicates()) {
+            for (BoolPredicate predicate : conjunction.getPredicates()) {
+                if (BoolPredicates.comparison(predicate) == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the set membership slots, or'ed with the conjunctions
+     */
+    public List<Slot> getMemberships() {
+        return memberships;
+    }
+
+    /**
+     * @return conjunctions of comparison slots, or'ed with the memberships
+     */
+    public List<List<Slot>> getConjunctions() {
+        return conjunctions;
+    }
+
+    /**
+     * @return the conjunctions that could not be expressed as slots, or null
+     */
+    public Disjunction getRemainder() {
+        return remainder;
+    }
+
+    /**
+     * @return whether the policy has no conjunctions, and so allows nothing
+     */
+    public boolean isEmpty() {
+        return !unconditional && memberships.isEmpty() && conjunctions.isEmpty() && remainder == null;
+    }
+
+    /**
+     * @return whether the policy has an empty conjunction, and so allows everything
+     */
+    public boolean isUnconditional() {
+        return unconditional;
+    }
+
+    /**
+     * A column compared to, or a member of, the constants of one or more predicates.
+     */
+    public static final class Slot {
+
+        private final String column;
+        private final String operator;
+        private final List<BoolPredicate> predicates;
+
+        Slot(String column, String operator, List<BoolPredicate> predicates) {
+            this.column = column;
+            this.operator = operator;
+            this.predicates = predicates;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        /**
+         * @return {@link PolicyShape#IN} for memberships, the JPQL comparison operator otherwise
+         */
+        public String getOperator() {
+            return operator;
+        }
+
+        public List<BoolPredicate> getPredicates() {
+            return predicates;
+        }
+
+        public boolean isMembership() {
+            return IN.equals(operator);
+        }
+    }
+}
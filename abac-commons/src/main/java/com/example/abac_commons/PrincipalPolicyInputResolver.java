@@ -0,0 +1,34 @@
+package com.example.abac_commons;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Builds the policy input from the request method and the authenticated principal, whose name is used as the
+ * given attribute (e.g. brokerId).
+ */
+public class PrincipalPolicyInputResolver implements PolicyInputResolver {
+
+    private final String principalAttribute;
+
+    public PrincipalPolicyInputResolver(String principalAttribute) {
+        this.principalAttribute = principalAttribute;
+    }
+
+    @Override
+    public Map<String, Object> resolve(HttpServletRequest request) {
+
+        Principal principal = request.getUserPrincipal();
+        if (principal == null) {
+            return null;
+        }
+
+        Map<String, Object> input = new HashMap<>();
+        input.put("action", request.getMethod());
+        input.put(principalAttribute, principal.getName());
+        return input;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.abac_commons;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Id;
+
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.content.commons.utils.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Reads a property path, such as {@code broker.id}, through a chain of getter method handles.
+ *
+ * Accessors are resolved once per entity class and path, and reading through them neither reflects nor allocates.
+ * The id of an uninitialized lazy association is read from its proxy, so {@code broker.id} does not load the broker.
+ */
+public final class PropertyAccessor {
+
+    /** read from a path with a null property along it */
+    public static final Object ABSENT = new Object();
+
+    private static final PropertyAccessor UNRESOLVED = new PropertyAccessor(new MethodHandle[0], new boolean[0], Object.class);
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<Map<String, PropertyAccessor>> accessors = new ClassValue<Map<String, PropertyAccessor>>() {
+        @Override
+        protected Map<String, PropertyAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final MethodHandle[] getters;
+    private final boolean[] ids;
+    private final Class<?> type;
+
+    private PropertyAccessor(MethodHandle[] getters, boolean[] ids, Class<?> type) {
+        this.getters = getters;
+        this.ids = ids;
+        this.type = type;
+    }
+
+    /**
+     * @return the accessor of the path, or null if the entity class has no such readable path
+     */
+    public static PropertyAccessor of(Class<?> entityType, String path) {
+        PropertyAccessor accessor = accessors.get(entityType).computeIfAbsent(path, p -> resolve(entityType, p));
+        return accessor != UNRESOLVED ? accessor : null;
+    }
+
+    private static PropertyAccessor resolve(Class<?> entityType, String path) {
+        String[] properties = path.split("\\.");
+        MethodHandle[] getters = new MethodHandle[properties.length];
+        boolean[] ids = new boolean[properties.length];
+
+        Class<?> type = entityType;
+        for (int i = 0; i < properties.length; i++) {
+            PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(type, properties[i]);
+            Method read = pd != null ? pd.getReadMethod() : null;
+            if (read == null) {
+                return UNRESOLVED;
+            }
+
+            ReflectionUtils.makeAccessible(read);
+            try {
+                getters[i] = MethodHandles.lookup().unreflect(read).asType(GETTER);
+            } catch (IllegalAccessException iae) {
+                return UNRESOLVED;
+            }
+
+            Field id = BeanUtils.findFieldWithAnnotation(type, Id.class);
+            ids[i] = id != null && id.getName().equals(properties[i]);
+            type = read.getReturnType();
+        }
+        return new PropertyAccessor(getters, ids, type);
+    }
+
+    /**
+     * @return the declared type of the last property of the path
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return the value of the path, or {@link #ABSENT} when a property along it is null
+     */
+    public Object get(Object entity) {
+        Object value = entity;
+        for (int i = 0; i < getters.length; i++) {
+            if (value == null) {
+                return ABSENT;
+            }
+            if (ids[i] && value instanceof HibernateProxy) {
+                value = ((HibernateProxy) value).getHibernateLazyInitializer().getIdentifier();
+                continue;
+            }
+            try {
+                value = (Object) getters[i].invokeExact(value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,456 @@
+package com.example.abac_commons;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import be.heydari.AstWalker;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * In-process partial evaluator for Rego policy bundles.
+ *
+ * Produces the same residual policy OPA's /v1/compile API would, without the network round trip. Only the
+ * subset of Rego used by our bundles is supported: a package, default values and rules whose bodies are
+ * comparisons (==, !=, <, <=, >, >=) between refs and scalar literals. Rules with the same name are or'ed.
+ *
+ * Results are rendered as an OPA compile response and turned into a {@link Disjunction} by rego-java's
+ * {@link AstWalker}, exactly as residuals fetched from a real OPA server are.
+ */
+public class RegoPartialEvaluator {
+
+    public static final String DEFAULT_BUNDLE_LOCATION = "classpath*:policies/*.rego";
+
+    private static final Map<String, String> OPERATORS = new HashMap<>();
+    static {
+        OPERATORS.put("==", "equal");
+        OPERATORS.put("!=", "neq");
+        OPERATORS.put("<", "lt");
+        OPERATORS.put("<=", "lte");
+        OPERATORS.put(">", "gt");
+        OPERATORS.put(">=", "gte");
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // rule path, e.g. data.abac_spike.allow_partial, to the bodies defining it
+    private final Map<String, List<List<Expr>>> rules = new HashMap<>();
+
+    public RegoPartialEvaluator(String... modules) {
+        for (String module : modules) {
+            parse(module);
+        }
+    }
+
+    public static RegoPartialEvaluator fromBundle() throws IOException {
+        return fromBundle(DEFAULT_BUNDLE_LOCATION);
+    }
+
+    public static RegoPartialEvaluator fromBundle(String locationPattern) throws IOException {
+
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(locationPattern);
+        Assert.notEmpty(resources, format("no rego modules found at %s", locationPattern));
+
+        String[] modules = new String[resources.length];
+        for (int i = 0; i < resources.length; i++) {
+            try (InputStream in = resources[i].getInputStream()) {
+                modules[i] = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+            }
+        }
+        return new RegoPartialEvaluator(modules);
+    }
+
+    /**
+     * Partially evaluates the given query and returns the residual policy.
+     *
+     * @param query a rule reference, e.g. data.abac_spike.allow_partial, optionally compared to true
+     * @param input the OPA input document
+     * @param unknowns refs whose values are unknown, e.g. data.accountState
+     */
+    public Disjunction compile(String query, Map<String, Object> input, List<String> unknowns) {
+        return AstWalker.walk(compileToJson(query, input, unknowns));
+    }
+
+    /**
+     * Partially evaluates the given query and renders the result as an OPA /v1/compile response.
+     */
+    public String compileToJson(String query, Map<String, Object> input, List<String> unknowns) {
+        try {
+            return mapper.writeValueAsString(toResponse(evaluate(query, input, unknowns)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("unable to render compile response", e);
+        }
+    }
+
+    List<List<Expr>> evaluate(String query, Map<String, Object> input, List<String> unknowns) {
+
+        String rule = query.trim();
+        if (rule.endsWith("== true")) {
+            rule = rule.substring(0, rule.length() - "== true".length()).trim();
+        }
+
+        List<List<Expr>> bodies = rules.get(rule);
+        if (bodies == null) {
+            throw new IllegalArgumentException(format("unsupported query: %s", query));
+        }
+
+        Map<String, Object> in = input != null ? input : Collections.<String, Object>emptyMap();
+        List<String> unk = unknowns != null ? unknowns : Collections.<String>emptyList();
+
+        List<List<Expr>> residuals = new ArrayList<>();
+        for (List<Expr> body : bodies) {
+            List<Expr> residual = evaluate(body, in, unk);
+            if (residual == null) {
+                continue;
+            }
+            if (residual.isEmpty()) {
+                // unconditionally true
+                return Collections.singletonList(residual);
+            }
+            residuals.add(residual);
+        }
+        return residuals;
+    }
+
+    private List<Expr> evaluate(List<Expr> body, Map<String, Object> input, List<String> unknowns) {
+
+        List<Expr> residual = new ArrayList<>();
+        for (Expr expr : body) {
+            Term left = resolve(expr.left, input, unknowns);
+            Term right = resolve(expr.right, input, unknowns);
+
+            if (left.isRef() || right.isRef()) {
+                residual.add(new Expr(left, expr.op, right));
+            } else if (!compare(left.value, expr.op, right.value)) {
+                return null;
+            }
+        }
+        return residual;
+    }
+
+    private Term resolve(Term term, Map<String, Object> input, List<String> unknowns) {
+
+        if (!term.isRef()) {
+            return term;
+        }
+        for (String unknown : unknowns) {
+            if (term.ref.equals(unknown) || term.ref.startsWith(unknown + ".")) {
+                return term;
+            }
+        }
+        if (term.ref.startsWith("input.")) {
+            Object value = input;
+            for (String key : term.ref.substring("input.".length()).split("\\.")) {
+                value = value instanceof Map ? ((Map<?, ?>) value).get(key) : null;
+            }
+            return Term.literal(value);
+        }
+        throw new IllegalArgumentException(format("unable to resolve %s", term.ref));
+    }
+
+    private static boolean compare(Object left, String op, Object right) {
+
+        if (left instanceof Number && right instanceof Number) {
+            int c = new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+            return test(c, op);
+        }
+        if ("==".equals(op)) {
+            return Objects.equals(left, right);
+        }
+        if ("!=".equals(op)) {
+            return !Objects.equals(left, right);
+        }
+        if (left instanceof String && right instanceof String) {
+            return test(((String) left).compareTo((String) right), op);
+        }
+        return false;
+    }
+
+    private static boolean test(int c, String op) {
+        switch (op) {
+            case "==": return c == 0;
+            case "!=": return c != 0;
+            case "<": return c < 0;
+            case "<=": return c <= 0;
+            case ">": return c > 0;
+            case ">=": return c >= 0;
+            default: throw new IllegalArgumentException(format("unsupported operator %s", op));
+        }
+    }
+
+    private Map<String, Object> toResponse(List<List<Expr>> residuals) {
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (!residuals.isEmpty()) {
+            List<List<Object>> queries = new ArrayList<>();
+            for (List<Expr> residual : residuals) {
+                List<Object> query = new ArrayList<>();
+                for (int i = 0; i < residual.size(); i++) {
+                    Expr expr = residual.get(i);
+
+                    List<Object> terms = new ArrayList<>();
+                    terms.add(ref(Collections.singletonList(var(OPERATORS.get(expr.op)))));
+                    terms.add(toJson(expr.left));
+                    terms.add(toJson(expr.right));
+
+                    Map<String, Object> e = new LinkedHashMap<>();
+                    e.put("index", i);
+                    e.put("terms", terms);
+                    query.add(e);
+                }
+                queries.add(query);
+            }
+            result.put("queries", queries);
+        }
+        return Collections.<String, Object>singletonMap("result", result);
+    }
+
+    private static Object toJson(Term term) {
+
+        if (term.isRef()) {
+            String[] parts = term.ref.split("\\.");
+            List<Object> value = new ArrayList<>();
+            value.add(var(parts[0]));
+            for (int i = 1; i < parts.length; i++) {
+                value.add(scalar("string", parts[i]));
+            }
+            return ref(value);
+        }
+        if (term.value == null) {
+            return scalar("null", null);
+        }
+        if (term.value instanceof Boolean) {
+            return scalar("boolean", term.value);
+        }
+        if (term.value instanceof Number) {
+            return scalar("number", term.value);
+        }
+        return scalar("string", term.value.toString());
+    }
+
+    private static Map<String, Object> ref(List<Object> value) {
+        return scalar("ref", value);
+    }
+
+    private static Map<String, Object> var(String name) {
+        return scalar("var", name);
+    }
+
+    private static Map<String, Object> scalar(String type, Object value) {
+        Map<String, Object> term = new LinkedHashMap<>();
+        term.put("type", type);
+        term.put("value", value);
+        return term;
+    }
+
+    ///////////////////////
+    // rego module parsing
+
+    private void parse(String module) {
+
+        Tokenizer tokens = new Tokenizer(module);
+        String pkg = null;
+
+        while (tokens.hasNext()) {
+            String token = tokens.next();
+
+            if ("\n".equals(token) || ";".equals(token)) {
+                continue;
+            }
+            if ("package".equals(token)) {
+                pkg = "data." + tokens.next();
+            } else if ("import".equals(token)) {
+                tokens.skipLine();
+            } else if ("default".equals(token)) {
+                // default values only apply to total evaluation; the residual is the rule bodies
+                tokens.skipLine();
+            } else {
+                Assert.state(pkg != null, "rego module must declare a package");
+
+                String name = token;
+                String next = tokens.next();
+                if ("=".equals(next)) {
+                    Object value = Term.parse(tokens.next()).value;
+                    Assert.state(Boolean.TRUE.equals(value), format("unsupported rule value for %s", name));
+                    next = tokens.next();
+                }
+                Assert.state("{".equals(next), format("expected { after rule %s", name));
+
+                rules.computeIfAbsent(pkg + "." + name, k -> new ArrayList<>()).add(parseBody(tokens));
+            }
+        }
+    }
+
+    private static List<Expr> parseBody(Tokenizer tokens) {
+
+        List<Expr> body = new ArrayList<>();
+        while (true) {
+            String token = tokens.next();
+            if ("}".equals(token)) {
+                return body;
+            }
+            if ("\n".equals(token) || ";".equals(token)) {
+                continue;
+            }
+
+            Term left = Term.parse(token);
+            String op = tokens.next();
+            Assert.state(OPERATORS.containsKey(op), format("unsupported operator %s", op));
+            Term right = Term.parse(tokens.next());
+            body.add(new Expr(left, op, right));
+        }
+    }
+
+    static final class Expr {
+
+        final Term left;
+        final String op;
+        final Term right;
+
+        Expr(Term left, String op, Term right) {
+            this.left = left;
+            this.op = op;
+            this.right = right;
+        }
+
+        @Override
+        public String toString() {
+            return format("%s %s %s", left, op, right);
+        }
+    }
+
+    static final class Term {
+
+        final String ref;
+        final Object value;
+
+        private Term(String ref, Object value) {
+            this.ref = ref;
+            this.value = value;
+        }
+
+        static Term literal(Object value) {
+            return new Term(null, value);
+        }
+
+        static Term parse(String token) {
+            if (token.startsWith("\"")) {
+                return literal(token.substring(1, token.length() - 1));
+            }
+            if ("true".equals(token) || "false".equals(token)) {
+                return literal(Boolean.valueOf(token));
+            }
+            if ("null".equals(token)) {
+                return literal(null);
+            }
+            if (Character.isDigit(token.charAt(0)) || token.charAt(0) == '-') {
+                return literal(new BigDecimal(token));
+            }
+            return new Term(token, null);
+        }
+
+        boolean isRef() {
+            return ref != null;
+        }
+
+        @Override
+        public String toString() {
+            return isRef() ? ref : String.valueOf(value);
+        }
+    }
+
+    static final class Tokenizer {
+
+        private final String src;
+        private int pos;
+        private String peeked;
+
+        Tokenizer(String src) {
+            this.src = src;
+        }
+
+        boolean hasNext() {
+            if (peeked == null) {
+                peeked = read();
+            }
+            return peeked != null;
+        }
+
+        String next() {
+            if (!hasNext()) {
+                throw new IllegalStateException("unexpected end of rego module");
+            }
+            String token = peeked;
+            peeked = null;
+            return token;
+        }
+
+        void skipLine() {
+            peeked = null;
+            int nl = src.indexOf('\n', pos);
+            pos = nl == -1 ? src.length() : nl;
+        }
+
+        private String read() {
+
+            while (pos < src.length()) {
+                char c = src.charAt(pos);
+                if (c == '#') {
+                    while (pos < src.length() && src.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else if (c == '\n') {
+                    pos++;
+                    return "\n";
+                } else if (Character.isWhitespace(c)) {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (pos >= src.length()) {
+                return null;
+            }
+
+            int start = pos;
+            char c = src.charAt(pos);
+            if (c == '"') {
+                pos++;
+                while (pos < src.length() && src.charAt(pos) != '"') {
+                    pos += src.charAt(pos) == '\\' ? 2 : 1;
+                }
+                pos++;
+            } else if ("=!<>:".indexOf(c) != -1) {
+                pos++;
+                if (pos < src.length() && src.charAt(pos) == '=') {
+                    pos++;
+                }
+            } else if ("{};".indexOf(c) != -1) {
+                pos++;
+            } else {
+                while (pos < src.length() && !Character.isWhitespace(src.charAt(pos)) && "{};=!<>\"#".indexOf(src.charAt(pos)) == -1) {
+                    pos++;
+                }
+            }
+            return src.substring(start, pos);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.abac_commons;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.util.Assert;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * TTL cache of residual policies keyed by policy input.
+ *
+ * Entries are refreshed asynchronously once they are older than the refresh interval, so hot inputs keep being
+ * served from the cache while the compiler is called in the background. Concurrent misses for the same input
+ * share a single compile call which keeps request storms away from the compiler.
+ */
+public class ResidualPolicyCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+    public static final Duration DEFAULT_EXPIRE_AFTER_WRITE = Duration.ofMinutes(5);
+    public static final Duration DEFAULT_REFRESH_AFTER_WRITE = Duration.ofMinutes(1);
+
+    private final LoadingCache<Map<String, Object>, Disjunction> cache;
+
+    public ResidualPolicyCache(ResidualPolicyCompiler compiler) {
+        this(compiler, DEFAULT_MAXIMUM_SIZE, DEFAULT_EXPIRE_AFTER_WRITE, DEFAULT_REFRESH_AFTER_WRITE, ForkJoinPool.commonPool());
+    }
+
+    public ResidualPolicyCache(ResidualPolicyCompiler compiler, long maximumSize, Duration expireAfterWrite, Duration refreshAfterWrite, Executor executor) {
+
+        Assert.notNull(compiler, "compiler must not be null");
+        Assert.isTrue(refreshAfterWrite.compareTo(expireAfterWrite) < 0, "refreshAfterWrite must be shorter than expireAfterWrite");
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .refreshAfterWrite(refreshAfterWrite)
+                .executor(executor)
+                .recordStats()
+                .build(compiler::compile);
+    }
+
+    public Disjunction get(Map<String, Object> input) {
+        return cache.get(input);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.abac_commons;
+
+import java.util.Map;
+
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Produces the residual policy for a policy input, e.g. by asking OPA to partially evaluate it.
+ */
+public interface ResidualPolicyCompiler {
+
+    Disjunction compile(Map<String, Object> input);
+}
@@ -0,0 +1,45 @@
+package com.example.abac_commons;
+
+import java.util.List;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Opt-in count-free paging for the current request.
+ *
+ * Requests sending {@value #SLICE_HEADER}{@code : true} are paged by fetching one entity more than the page size
+ * instead of also running a count query with the policy predicate. Repository finders must still return a
+ * {@link Page}, so the page's totals are lower bounds; only whether there is a next page is exact.
+ */
+public final class SliceContext {
+
+    public static final String SLICE_HEADER = "X-ABAC-Slice";
+
+    private static ThreadLocal<Boolean> currentSliceContext = new ThreadLocal<Boolean>();
+
+    private SliceContext() {}
+
+    public static boolean isSliced() {
+        return Boolean.TRUE.equals(currentSliceContext.get());
+    }
+
+    public static void setSliced(boolean sliced) {
+        currentSliceContext.set(sliced);
+    }
+
+    public static void clear() {
+        currentSliceContext.remove();
+    }
+
+    /**
+     * @param rows the result of the page's query limited to one more than the page size
+     * @return the page of the first page size rows, with a next page if there were more
+     */
+    public static <T> Page<T> page(List<T> rows, Pageable pageable) {
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<T> content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+        return new PageImpl<>(content, pageable, pageable.getOffset() + content.size() + (hasNext ? 1 : 0));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.util.Base64;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.converters.protobuf.generated.PDisjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+@RunWith(Ginkgo4jRunner.class)
+public class ABACContextDecoderTest {
+
+    private ABACContextDecoder decoder;
+    private String header;
+    private Exception e;
+
+    {
+        Describe("ABACContextDecoder", () -> {
+
+            BeforeEach(() -> {
+                decoder = new ABACContextDecoder();
+                header = Base64.getEncoder().encodeToString(PDisjunction.newBuilder().build().toByteArray());
+            });
+
+            It("should decode a header once and share the result", () -> {
+                Disjunction first = decoder.decode(header);
+                Disjunction second = decoder.decode(header);
+
+                assertThat(first, is(not(nullValue())));
+                assertThat(second, is(sameInstance(first)));
+                assertThat(decoder.missCount(), is(1L));
+                assertThat(decoder.hitCount(), is(1L));
+            });
+
+            It("should surface malformed protobuf as an IOException", () -> {
+                try {
+                    decoder.decode(Base64.getEncoder().encodeToString(new byte[] {(byte) 0xff}));
+                } catch (Exception ex) {
+                    e = ex;
+                }
+
+                assertThat(e, is(instanceOf(IOException.class)));
+            });
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.AfterEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.runner.RunWith;
+import org.springframework.data.repository.core.EntityInformation;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.expressions.Disjunction;
+
+@RunWith(Ginkgo4jRunner.class)
+public class ABACContextSnapshotTest {
+
+    private ExecutorService pool;
+    private ExecutorService executor;
+    private Disjunction policy;
+    private EntityInformation entity;
+
+    {
+        Describe("ABACContextSnapshot", () -> {
+
+            BeforeEach(() -> {
+                pool = Executors.newSingleThreadExecutor();
+                executor = ABACContextExecutors.wrap(pool);
+                policy = mock(Disjunction.class);
+                entity = mock(EntityInformation.class);
+            });
+
+            AfterEach(() -> {
+                ABACContext.clear();
+                EntityContext.clear();
+                pool.shutdownNow();
+            });
+
+            Context("when a task is submitted with a context set", () -> {
+
+                BeforeEach(() -> {
+                    // start the worker thread before the context exists so nothing can be inherited
+                    pool.submit(() -> {}).get();
+
+                    ABACContext.setCurrentAbacContext(policy);
+                    EntityContext.setCurrentEntityContext(entity);
+                });
+
+                It("should run the task with the submitter's context", () -> {
+                    assertThat(executor.submit((Callable<Disjunction>) ABACContext::getCurrentAbacContext).get(), is(sameInstance(policy)));
+                    assertThat(executor.submit((Callable<EntityInformation>) EntityContext::getCurrentEntityContext).get(), is(sameInstance(entity)));
+                });
+
+                It("should not leave the context on the worker thread", () -> {
+                    executor.submit(() -> {}).get();
+
+                    assertThat(pool.submit((Callable<Disjunction>) ABACContext::getCurrentAbacContext).get(), is(nullValue()));
+                    assertThat(pool.submit((Callable<EntityInformation>) EntityContext::getCurrentEntityContext).get(), is(nullValue()));
+                });
+            });
+
+            Context("when a snapshot is restored", () -> {
+
+                It("should reinstate the previous context when the scope is closed", () -> {
+                    ABACContext.setCurrentAbacContext(policy);
+                    ABACContextSnapshot snapshot = ABACContextSnapshot.capture();
+                    ABACContext.clear();
+
+                    try (ABACContextSnapshot.Scope scope = snapshot.restore()) {
+                        assertThat(ABACContext.getCurrentAbacContext(), is(sameInstance(policy)));
+                    }
+                    assertThat(ABACContext.getCurrentAbacContext(), is(nullValue()));
+                });
+            });
+        });
+    }
+}
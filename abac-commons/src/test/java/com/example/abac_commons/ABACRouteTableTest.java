@@ -0,0 +1,83 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.runner.RunWith;
+import org.springframework.data.repository.core.EntityInformation;
+import org.springframework.util.AntPathMatcher;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+@RunWith(Ginkgo4jRunner.class)
+public class ABACRouteTableTest {
+
+    private ABACRouteTable routes;
+    private EntityInformation<?, ?> accountStates;
+    private EntityInformation<?, ?> brokers;
+
+    {
+        Describe("ABACRouteTable", () -> {
+
+            BeforeEach(() -> {
+                accountStates = mock(EntityInformation.class);
+                brokers = mock(EntityInformation.class);
+
+                Map<String, EntityInformation<?, ?>> map = new HashMap<>();
+                map.put("accountStates", accountStates);
+                map.put("brokers", brokers);
+                routes = new ABACRouteTable(map);
+            });
+
+            It("should resolve a repository from the first segment", () -> {
+                assertThat(routes.lookup("/accountStates"), is(sameInstance(accountStates)));
+                assertThat(routes.lookup("/accountStates/1"), is(sameInstance(accountStates)));
+                assertThat(routes.lookup("/brokers/1/accountStates"), is(sameInstance(brokers)));
+            });
+
+            It("should resolve a repository from the second segment", () -> {
+                assertThat(routes.lookup("/content/accountStates/1"), is(sameInstance(accountStates)));
+            });
+
+            It("should not match segment prefixes", () -> {
+                assertThat(routes.lookup("/account/1"), is(nullValue()));
+                assertThat(routes.lookup("/accountStatesX/1"), is(nullValue()));
+            });
+
+            It("should return null for unknown paths", () -> {
+                assertThat(routes.lookup("/"), is(nullValue()));
+                assertThat(routes.lookup("/actuator/health"), is(nullValue()));
+            });
+
+            It("should map the filter to the routed repositories under each prefix", () -> {
+                Map<String, EntityInformation<?, ?>> map = new HashMap<>();
+                map.put("accountStates", accountStates);
+                routes = new ABACRouteTable(map, Arrays.asList("", "/content"));
+
+                assertThat(routes.getUrlPatterns(), containsInAnyOrder("/accountStates/*", "/content/accountStates/*"));
+            });
+
+            It("should match the items of the routed repositories only", () -> {
+                AntPathMatcher matcher = new AntPathMatcher();
+
+                assertThat(matcher.match(routes.getItemPattern(), "/accountStates/1"), is(true));
+                assertThat(matcher.match(routes.getItemPattern(), "/brokers/1"), is(true));
+                assertThat(matcher.match(routes.getItemPattern(), "/accountStatesX/1"), is(false));
+                assertThat(matcher.match(routes.getItemPattern(), "/accountStates/1/broker"), is(false));
+                assertThat(matcher.extractUriTemplateVariables(routes.getItemPattern(), "/brokers/1").get("repository"), is("brokers"));
+                assertThat(new ABACRouteTable(new HashMap<>()).getItemPattern(), is(nullValue()));
+            });
+        });
+    }
+}
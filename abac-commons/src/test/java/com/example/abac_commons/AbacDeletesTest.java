@@ -0,0 +1,64 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import javax.persistence.EntityManager;
+
+import org.junit.runner.RunWith;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+@RunWith(Ginkgo4jRunner.class)
+public class AbacDeletesTest {
+
+    private EntityManager em;
+    private PlatformTransactionManager ptm;
+    private AbacDeletes deletes;
+
+    private Exception e;
+
+    {
+        Describe("AbacDeletes", () -> {
+
+            BeforeEach(() -> {
+                em = mock(EntityManager.class);
+                ptm = mock(PlatformTransactionManager.class);
+                deletes = new AbacDeletes(em, ptm, new CompiledPolicyCache(), new AbacMetrics());
+            });
+
+            Context("#deleteAll", () -> {
+
+                Context("given neither a filter nor an ABAC context", () -> {
+
+                    BeforeEach(() -> {
+                        ABACContext.clear();
+
+                        e = null;
+                        try {
+                            deletes.deleteAll(Document.class, null);
+                        } catch (Exception ex) {
+                            e = ex;
+                        }
+                    });
+
+                    It("should refuse to delete every row", () -> {
+                        assertThat(e, is(instanceOf(IllegalStateException.class)));
+                        verifyNoInteractions(em, ptm);
+                    });
+                });
+            });
+        });
+    }
+
+    public static class Document {
+    }
+}
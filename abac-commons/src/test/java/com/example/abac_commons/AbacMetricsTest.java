@@ -0,0 +1,65 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.expressions.BoolPredicate;
+import be.heydari.lib.expressions.Conjunction;
+import be.heydari.lib.expressions.Disjunction;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@RunWith(Ginkgo4jRunner.class)
+public class AbacMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private AbacMetrics metrics;
+
+    {
+        Describe("AbacMetrics", () -> {
+
+            BeforeEach(() -> {
+                registry = new SimpleMeterRegistry();
+                metrics = new AbacMetrics(registry);
+            });
+
+            It("should time phases by phase, domain type and operation", () -> {
+                Timer.Sample sample = metrics.start();
+                metrics.stop(sample, AbacMetrics.QUERY, String.class, "findAll");
+
+                Timer timer = registry.get(AbacMetrics.PHASE_TIMER)
+                        .tag("phase", AbacMetrics.QUERY)
+                        .tag("domain", "String")
+                        .tag("operation", "findAll")
+                        .timer();
+                assertThat(timer.count(), is(1L));
+            });
+
+            It("should publish the size of the policy", () -> {
+                Conjunction first = mock(Conjunction.class);
+                when(first.getPredicates()).thenReturn(Arrays.asList(mock(BoolPredicate.class), mock(BoolPredicate.class)));
+                Conjunction second = mock(Conjunction.class);
+                when(second.getPredicates()).thenReturn(Arrays.asList(mock(BoolPredicate.class)));
+                Disjunction policy = mock(Disjunction.class);
+                when(policy.getConjunctivePredicates()).thenReturn(Arrays.asList(first, second));
+
+                metrics.policySize(policy);
+
+                assertThat(registry.get(AbacMetrics.CURRENT_CONJUNCTIONS).gauge().value(), is(2.0));
+                assertThat(registry.get(AbacMetrics.CURRENT_PREDICATES).gauge().value(), is(3.0));
+                assertThat(registry.get(AbacMetrics.PREDICATES).summary().totalAmount(), is(3.0));
+            });
+        });
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.persistence.Id;
+import javax.persistence.Version;
+
+import org.junit.runner.RunWith;
+import org.springframework.content.commons.annotations.ContentId;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.expressions.Disjunction;
+import lombok.Getter;
+import lombok.Setter;
+
+@RunWith(Ginkgo4jRunner.class)
+public class AbacUpdatesTest {
+
+    {
+        Describe("AbacUpdates", () -> {
+
+            Context("#constrains", () -> {
+
+                It("should be true for properties the policy compares, or compares properties of", () -> {
+                    Disjunction policy = policy();
+
+                    assertThat(AbacUpdates.constrains(policy, Collections.singletonList("type")), is(true));
+                    assertThat(AbacUpdates.constrains(policy, Collections.singletonList("broker")), is(true));
+                });
+
+                It("should be false for other properties", () -> {
+                    assertThat(AbacUpdates.constrains(policy(), Arrays.asList("name", "brok", "types")), is(false));
+                });
+            });
+
+            Context("#assignable", () -> {
+
+                It("should list the simple properties except the id, version and managed properties", () -> {
+                    assertThat(AbacUpdates.assignable(Document.class), contains("name", "type"));
+                    assertThat(AbacUpdates.idProperty(Document.class), is("id"));
+                    assertThat(AbacUpdates.versionProperty(Document.class), is("vstamp"));
+                });
+            });
+
+            Context("AbacUpdateController#isHandled", () -> {
+
+                It("should handle simple properties", () -> {
+                    assertThat(AbacUpdateController.isHandled(Document.class, values("name", "type"), true), is(true));
+                    assertThat(AbacUpdateController.isHandled(Document.class, values("name"), false), is(true));
+                });
+
+                It("should hand partial PUTs, associations and managed properties back to Spring Data REST", () -> {
+                    assertThat(AbacUpdateController.isHandled(Document.class, values("name"), true), is(false));
+                    assertThat(AbacUpdateController.isHandled(Document.class, values("name", "parent"), false), is(false));
+                    assertThat(AbacUpdateController.isHandled(Document.class, values("contentId"), false), is(false));
+                    assertThat(AbacUpdateController.isHandled(Document.class, values(), false), is(false));
+                });
+            });
+
+            Context("AbacUpdateController#properties", () -> {
+
+                It("should name properties as Jackson does", () -> {
+                    Map<String, Object> body = new LinkedHashMap<>();
+                    body.put("title", "x");
+                    body.put("_links", Collections.emptyMap());
+
+                    assertThat(AbacUpdateController.properties(Titled.class, body), is(Collections.singletonMap("name", "x")));
+                });
+
+                It("should not map bodies naming properties Jackson ignores", () -> {
+                    assertThat(AbacUpdateController.properties(Titled.class, Collections.singletonMap("secret", "x")), is(nullValue()));
+                    assertThat(AbacUpdateController.properties(Titled.class, Collections.singletonMap("name", "x")), is(nullValue()));
+                });
+            });
+
+            Context("AbacUpdateController#version", () -> {
+
+                It("should strip the quotes and weakness of an entity tag", () -> {
+                    assertThat(AbacUpdateController.version("\"3\""), is("3"));
+                    assertThat(AbacUpdateController.version("W/\"3\""), is("3"));
+                    assertThat(AbacUpdateController.version("3"), is("3"));
+                });
+            });
+        });
+    }
+
+    private static Map<String, Object> values(String... properties) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String property : properties) {
+            values.put(property, "x");
+        }
+        return values;
+    }
+
+    private static Disjunction policy() {
+        String rego = "package updates\n"
+                + "allow {\n  data.accountState.broker.id == \"1L\"\n}\n"
+                + "allow {\n  data.accountState.type == \"statement\"\n}\n";
+        return new RegoPartialEvaluator(rego).compile("data.updates.allow", Collections.emptyMap(), Collections.singletonList("data.accountState"));
+    }
+
+    @Getter
+    @Setter
+    public static class Document {
+
+        @Id
+        private Long id;
+
+        @Version
+        private Long vstamp;
+
+        private String name;
+        private String type;
+        private Document parent;
+
+        @ContentId
+        private String contentId;
+    }
+
+    @Getter
+    @Setter
+    public static class Titled {
+
+        @JsonProperty("title")
+        private String name;
+
+        @JsonIgnore
+        private String secret;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.runner.RunWith;
+import org.springframework.data.repository.core.EntityInformation;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+@RunWith(Ginkgo4jRunner.class)
+public class BatchIdsTest {
+
+    private EntityInformation<String, Long> ei;
+
+    private Exception e;
+
+    {
+        Describe("BatchIds", () -> {
+
+            BeforeEach(() -> {
+                ei = mock(EntityInformation.class);
+                when(ei.getId(any())).thenAnswer(invocation -> Long.valueOf(((String) invocation.getArgument(0)).substring(1)));
+            });
+
+            Context("#of", () -> {
+
+                It("should convert the ids to the id type", () -> {
+                    assertThat(BatchIds.of(Arrays.asList("3", "1"), Long.class).typed(), is(Arrays.asList(3L, 1L)));
+                });
+
+                It("should reject an id that does not convert", () -> {
+                    e = null;
+                    try {
+                        BatchIds.of(Arrays.asList("1", "x"), Long.class);
+                    } catch (Exception ex) {
+                        e = ex;
+                    }
+                    assertThat(e, is(instanceOf(IllegalArgumentException.class)));
+                });
+            });
+
+            Context("#result", () -> {
+
+                It("should return the found entities in the requested order", () -> {
+                    Map<String, Object> result = BatchIds.of(Arrays.asList("3", "1", "2"), Long.class).result(Arrays.asList("e1", "e2", "e3"), ei);
+
+                    assertThat(result.get("content"), is(Arrays.asList("e3", "e1", "e2")));
+                    assertThat(result.get("unavailable"), is(Collections.emptyList()));
+                });
+
+                It("should list the ids that were not found as unavailable", () -> {
+                    Map<String, Object> result = BatchIds.of(Arrays.asList("1", "4", "2", "5"), Long.class).result(Arrays.asList("e2", "e1"), ei);
+
+                    assertThat(result.get("content"), is(Arrays.asList("e1", "e2")));
+                    assertThat(result.get("unavailable"), is(Arrays.asList("4", "5")));
+                });
+
+                It("should match ids by value rather than by spelling", () -> {
+                    Map<String, Object> result = BatchIds.of(Arrays.asList("01", "2"), Long.class).result(Arrays.asList("e1", "e2"), ei);
+
+                    assertThat(result.get("content"), is(Arrays.asList("e1", "e2")));
+                    assertThat(result.get("unavailable"), is(Collections.emptyList()));
+                });
+            });
+        });
+    }
+}
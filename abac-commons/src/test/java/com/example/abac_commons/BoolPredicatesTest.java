@@ -0,0 +1,48 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Collections;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.expressions.BoolPredicate;
+
+@RunWith(Ginkgo4jRunner.class)
+public class BoolPredicatesTest {
+
+    {
+        Describe("BoolPredicates", () -> {
+
+            Context("#comparison", () -> {
+
+                It("should be the JPQL comparison abac-lib renders the operator to", () -> {
+                    assertThat(BoolPredicates.comparison(predicate("==")), is("="));
+                    assertThat(BoolPredicates.comparison(predicate("!=")), is("<>"));
+                    assertThat(BoolPredicates.comparison(predicate("<")), is("<"));
+                    assertThat(BoolPredicates.comparison(predicate("<=")), is("<="));
+                    assertThat(BoolPredicates.comparison(predicate(">")), is(">"));
+                    assertThat(BoolPredicates.comparison(predicate(">=")), is(">="));
+                });
+
+                It("should only treat equality as equality", () -> {
+                    assertThat(BoolPredicates.isEquality(predicate("==")), is(true));
+                    assertThat(BoolPredicates.isEquality(predicate("!=")), is(false));
+                    assertThat(BoolPredicates.isEquality(predicate(">=")), is(false));
+                });
+            });
+        });
+    }
+
+    private static BoolPredicate predicate(String rego) {
+        String policy = "package predicates\nallow {\n  data.accountState.size " + rego + " \"10L\"\n}\n";
+        return new RegoPartialEvaluator(policy).compile("data.predicates.allow", Collections.emptyMap(), Collections.singletonList("data.accountState"))
+                .getConjunctivePredicates().get(0).getPredicates().get(0);
+    }
+}
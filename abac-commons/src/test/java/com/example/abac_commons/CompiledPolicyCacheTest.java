@@ -0,0 +1,76 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+import com.querydsl.core.types.dsl.BooleanExpression;
+
+import be.heydari.lib.expressions.Disjunction;
+import lombok.Getter;
+
+@RunWith(Ginkgo4jRunner.class)
+public class CompiledPolicyCacheTest {
+
+    private CompiledPolicyCache cache;
+
+    {
+        Describe("CompiledPolicyCache", () -> {
+
+            Context("given a policy without conjunctions", () -> {
+
+                It("should deny everything rather than compile to nothing", () -> {
+                    cache = new CompiledPolicyCache();
+
+                    BooleanExpression abacExpr = cache.get(new Disjunction(new ArrayList<>()), Document.class, "entity");
+
+                    assertThat(abacExpr, is(sameInstance(CompiledPolicyCache.DENY_ALL)));
+                });
+            });
+
+            Context("given a policy with an empty conjunction", () -> {
+
+                It("should allow everything", () -> {
+                    cache = new CompiledPolicyCache();
+
+                    Disjunction unconditional = BoolPredicates.disjunction(Collections.singletonList(BoolPredicates.conjunction(Collections.emptyList())));
+                    BooleanExpression abacExpr = cache.get(unconditional, Document.class, "entity");
+
+                    assertThat(abacExpr, is(sameInstance(CompiledPolicyCache.ALLOW_ALL)));
+                });
+            });
+
+            Context("given a policy with a conjunction", () -> {
+
+                It("should compile a restriction", () -> {
+                    cache = new CompiledPolicyCache();
+
+                    BooleanExpression abacExpr = cache.get(policy("allow {\n  data.accountState.type == \"statement\"\n}\n"), Document.class, "entity");
+
+                    assertThat(abacExpr, is(notNullValue()));
+                    assertThat(abacExpr, is(not(sameInstance(CompiledPolicyCache.DENY_ALL))));
+                });
+            });
+        });
+    }
+
+    private static Disjunction policy(String rule) {
+        return new RegoPartialEvaluator("package predicates\n" + rule).compile("data.predicates.allow", Collections.emptyMap(), Collections.singletonList("data.accountState"));
+    }
+
+    @Getter
+    public static class Document {
+        private String type;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.expressions.BoolPredicate;
+import be.heydari.lib.expressions.Disjunction;
+
+@RunWith(Ginkgo4jRunner.class)
+public class DisjunctionNormalizerTest {
+
+    private static final String QUERY = "data.normalizer.allow";
+
+    private static final String POLICY = String.join("\n",
+            "package normalizer",
+            "allow {",
+            "  data.accountState.broker.id == \"1L\"",
+            "}",
+            "allow {",
+            "  data.accountState.broker.id == \"2L\"",
+            "}",
+            "allow {",
+            "  data.accountState.broker.id == \"2L\"",
+            "  data.accountState.broker.id == \"2L\"",
+            "}",
+            "allow {",
+            "  data.accountState.broker.id == \"1L\"",
+            "  data.accountState.name == \"x\"",
+            "}",
+            "allow {",
+            "  data.accountState.broker.id == \"3L\"",
+            "}",
+            "allow {",
+            "  data.accountState.name == \"y\"",
+            "  data.accountState.broker.id == \"4L\"",
+            "}");
+
+    private Disjunction policy;
+    private Disjunction normalized;
+
+    {
+        Describe("DisjunctionNormalizer", () -> {
+
+            BeforeEach(() -> {
+                policy = new RegoPartialEvaluator(POLICY).compile(QUERY, Collections.emptyMap(), Collections.singletonList("data.accountState"));
+                normalized = DisjunctionNormalizer.normalize(policy);
+            });
+
+            Context("#normalize", () -> {
+
+                It("should remove duplicate predicates and conjunctions, and subsumed conjunctions", () -> {
+                    assertThat(policy.getConjunctivePredicates().size(), is(6));
+                    assertThat(normalized.getConjunctivePredicates().size(), is(4));
+                });
+
+                It("should be idempotent", () -> {
+                    assertThat(PolicyFingerprint.of(DisjunctionNormalizer.normalize(normalized)), is(PolicyFingerprint.of(normalized)));
+                });
+            });
+
+            Context("#factor", () -> {
+
+                It("should group equality chains on the same column", () -> {
+                    DisjunctionNormalizer.FactoredDisjunction factored = DisjunctionNormalizer.factor(normalized);
+
+                    assertThat(factored.getMemberships().size(), is(1));
+                    List<BoolPredicate> brokers = factored.getMemberships().values().iterator().next();
+                    assertThat(brokers.size(), is(3));
+                    assertThat(factored.getRemainder().getConjunctivePredicates().size(), is(1));
+                    assertThat(factored.getRemainder().getConjunctivePredicates().get(0).getPredicates().size(), is(2));
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.AfterEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.expressions.Disjunction;
+
+@RunWith(Ginkgo4jRunner.class)
+public class EntityMemoTest {
+
+    private Disjunction statements;
+    private Disjunction invoices;
+
+    {
+        Describe("EntityMemo", () -> {
+
+            BeforeEach(() -> {
+                statements = policy("allow {\n  data.accountState.type == \"statement\"\n}\n");
+                invoices = policy("allow {\n  data.accountState.type == \"invoice\"\n}\n");
+            });
+
+            Context("outside a request", () -> {
+
+                It("should not memoize", () -> {
+                    EntityMemo.put(String.class, 1L, statements, Optional.of("a"));
+
+                    assertThat(EntityMemo.get(String.class, 1L, statements), is(nullValue()));
+                });
+            });
+
+            Context("within a request", () -> {
+
+                BeforeEach(() -> {
+                    EntityMemo.begin();
+                });
+
+                AfterEach(() -> {
+                    EntityMemo.clear();
+                });
+
+                It("should memoize lookups by domain type, id and policy", () -> {
+                    EntityMemo.put(String.class, 1L, statements, Optional.of("a"));
+                    EntityMemo.put(String.class, 2L, statements, Optional.empty());
+
+                    assertThat(EntityMemo.get(String.class, 1L, statements), is(Optional.of("a")));
+                    assertThat(EntityMemo.get(String.class, 2L, statements), is(Optional.empty()));
+                    assertThat(EntityMemo.get(String.class, 1L, invoices), is(nullValue()));
+                    assertThat(EntityMemo.get(Integer.class, 1L, statements), is(nullValue()));
+                });
+
+                It("should key lookups by the filter they applied", () -> {
+                    EntityMemo.put(String.class, 1L, statements, "name = a", Optional.of("a"));
+
+                    assertThat(EntityMemo.get(String.class, 1L, statements, "name = a"), is(Optional.of("a")));
+                    assertThat(EntityMemo.get(String.class, 1L, statements, "name = b"), is(nullValue()));
+                    assertThat(EntityMemo.get(String.class, 1L, statements), is(nullValue()));
+                });
+
+                It("should key policies by fingerprint", () -> {
+                    EntityMemo.put(String.class, 1L, statements, Optional.of("a"));
+
+                    Disjunction decodedAgain = policy("allow {\n  data.accountState.type == \"statement\"\n}\n");
+                    assertThat(EntityMemo.get(String.class, 1L, decodedAgain), is(Optional.of("a")));
+                });
+
+                It("should evict an entity under every policy", () -> {
+                    EntityMemo.put(String.class, 1L, statements, Optional.of("a"));
+                    EntityMemo.put(String.class, 1L, invoices, Optional.empty());
+                    EntityMemo.put(String.class, 2L, statements, Optional.of("b"));
+
+                    EntityMemo.evict(String.class, 1L);
+
+                    assertThat(EntityMemo.get(String.class, 1L, statements), is(nullValue()));
+                    assertThat(EntityMemo.get(String.class, 1L, invoices), is(nullValue()));
+                    assertThat(EntityMemo.get(String.class, 2L, statements), is(Optional.of("b")));
+                });
+
+                It("should evict every entity of a domain type", () -> {
+                    EntityMemo.put(String.class, 1L, statements, Optional.of("a"));
+                    EntityMemo.put(Integer.class, 1L, statements, Optional.of(1));
+
+                    EntityMemo.evict(String.class);
+
+                    assertThat(EntityMemo.get(String.class, 1L, statements), is(nullValue()));
+                    assertThat(EntityMemo.get(Integer.class, 1L, statements), is(Optional.of(1)));
+                });
+
+                It("should forget everything when the request ends", () -> {
+                    EntityMemo.put(String.class, 1L, statements, Optional.of("a"));
+
+                    EntityMemo.clear();
+                    EntityMemo.begin();
+
+                    assertThat(EntityMemo.get(String.class, 1L, statements), is(nullValue()));
+                });
+            });
+        });
+    }
+
+    private static Disjunction policy(String rule) {
+        return new RegoPartialEvaluator("package predicates\n" + rule).compile("data.predicates.allow", Collections.emptyMap(), Collections.singletonList("data.accountState"));
+    }
+}
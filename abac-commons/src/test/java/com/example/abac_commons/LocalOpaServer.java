@@ -0,0 +1,101 @@
+package com.example.abac_commons;
+
+import static java.lang.String.format;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * OPA-compatible stand-in serving the /v1/compile API from a {@link RegoPartialEvaluator}.
+ *
+ * Intended for tests that exercise the HTTP path to OPA without starting an OPA container.
+ */
+public class LocalOpaServer implements Closeable {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final RegoPartialEvaluator evaluator;
+    private final HttpServer server;
+
+    private LocalOpaServer(RegoPartialEvaluator evaluator, int port) throws IOException {
+        this.evaluator = evaluator;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/v1/compile", this::compile);
+    }
+
+    public static LocalOpaServer start(RegoPartialEvaluator evaluator) throws IOException {
+        return start(evaluator, 0);
+    }
+
+    public static LocalOpaServer start(RegoPartialEvaluator evaluator, int port) throws IOException {
+        LocalOpaServer server = new LocalOpaServer(evaluator, port);
+        server.server.start();
+        return server;
+    }
+
+    public String getUrl() {
+        InetSocketAddress address = server.getAddress();
+        return format("http://%s:%d", address.getHostString(), address.getPort());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void compile(HttpExchange exchange) throws IOException {
+
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("invalid_parameter", "method not allowed"));
+                return;
+            }
+
+            Map<String, Object> request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = mapper.readValue(in, Map.class);
+            }
+
+            String response = evaluator.compileToJson(
+                    (String) request.get("query"),
+                    (Map<String, Object>) request.get("input"),
+                    (List<String>) request.get("unknowns"));
+
+            respond(exchange, 200, response);
+        } catch (JsonProcessingException | RuntimeException e) {
+            respond(exchange, 400, error("invalid_parameter", String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String error(String code, String message) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("code", code);
+        error.put("message", message);
+        return mapper.writeValueAsString(error);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().put("Content-Type", Collections.singletonList("application/json"));
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
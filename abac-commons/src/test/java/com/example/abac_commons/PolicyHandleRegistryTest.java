@@ -0,0 +1,59 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Base64;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.converters.protobuf.generated.PDisjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+@RunWith(Ginkgo4jRunner.class)
+public class PolicyHandleRegistryTest {
+
+    private PolicyHandleRegistry registry;
+    private Disjunction policy;
+    private String handle;
+
+    {
+        Describe("PolicyHandleRegistry", () -> {
+
+            BeforeEach(() -> {
+                registry = new PolicyHandleRegistry();
+                policy = new ABACContextDecoder().decode(Base64.getEncoder().encodeToString(PDisjunction.newBuilder().build().toByteArray()));
+                handle = registry.register(policy);
+            });
+
+            It("should issue handles that cannot be mistaken for encoded policies", () -> {
+                assertThat(PolicyHandleRegistry.isHandle(handle), is(true));
+            });
+
+            It("should resolve a registered policy from its handle", () -> {
+                assertThat(registry.resolve(handle), is(sameInstance(policy)));
+            });
+
+            It("should reject a handle with a tampered signature", () -> {
+                String tampered = handle.substring(0, handle.length() - 1) + (handle.endsWith("A") ? "B" : "A");
+                assertThat(registry.resolve(tampered), is(nullValue()));
+            });
+
+            It("should reject a handle issued by another registry", () -> {
+                assertThat(new PolicyHandleRegistry().resolve(handle), is(nullValue()));
+            });
+
+            It("should reject a handle once the registry forgets the policy", () -> {
+                registry.invalidateAll();
+                assertThat(registry.resolve(handle), is(nullValue()));
+            });
+        });
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.persistence.Id;
+
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.junit.runner.RunWith;
+import org.springframework.beans.BeanWrapperImpl;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.BooleanExpression;
+
+import be.heydari.lib.expressions.Disjunction;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@RunWith(Ginkgo4jRunner.class)
+public class PolicyPredicatesTest {
+
+    {
+        Describe("PolicyPredicates", () -> {
+
+            Context("given a policy of comparisons", () -> {
+
+                It("should hold when any conjunction holds", () -> {
+                    Predicate<Document> policy = PolicyPredicates.of(policy(
+                            "allow {\n  data.accountState.broker.id == \"1L\"\n}\n",
+                            "allow {\n  data.accountState.type == \"statement\"\n  data.accountState.size > \"10L\"\n}\n"), Document.class);
+
+                    assertThat(policy.test(new Document("invoice", 0L, new Owner(1L))), is(true));
+                    assertThat(policy.test(new Document("statement", 11L, new Owner(2L))), is(true));
+                    assertThat(policy.test(new Document("statement", 10L, new Owner(2L))), is(false));
+                    assertThat(policy.test(new Document("invoice", 11L, new Owner(2L))), is(false));
+                });
+
+                It("should compare ordered values", () -> {
+                    Predicate<Document> lte = PolicyPredicates.of(policy("allow {\n  data.accountState.size <= \"10L\"\n}\n"), Document.class);
+
+                    assertThat(lte.test(new Document("statement", 9L, null)), is(true));
+                    assertThat(lte.test(new Document("statement", 10L, null)), is(true));
+                    assertThat(lte.test(new Document("statement", 11L, null)), is(false));
+                });
+
+                It("should not hold on nulls, as in SQL", () -> {
+                    Predicate<Document> neq = PolicyPredicates.of(policy("allow {\n  data.accountState.type != \"statement\"\n}\n"), Document.class);
+                    Predicate<Document> broker = PolicyPredicates.of(policy("allow {\n  data.accountState.broker.id != \"1L\"\n}\n"), Document.class);
+
+                    assertThat(neq.test(new Document("invoice", 0L, null)), is(true));
+                    assertThat(neq.test(new Document(null, 0L, null)), is(false));
+                    assertThat(broker.test(new Document("invoice", 0L, new Owner(null))), is(false));
+                    assertThat(broker.test(new Document("invoice", 0L, null)), is(false));
+                });
+
+                It("should compare the id of a lazy association without loading it", () -> {
+                    Predicate<Document> broker = PolicyPredicates.of(policy("allow {\n  data.accountState.broker.id == \"1L\"\n}\n"), Document.class);
+
+                    LazyInitializer initializer = mock(LazyInitializer.class);
+                    when(initializer.getIdentifier()).thenReturn(1L);
+                    Owner proxy = mock(Owner.class, withSettings().extraInterfaces(HibernateProxy.class));
+                    when(((HibernateProxy) proxy).getHibernateLazyInitializer()).thenReturn(initializer);
+
+                    assertThat(broker.test(new Document("invoice", 0L, proxy)), is(true));
+                    verify(proxy, never()).getId();
+                });
+
+                It("should compile once per policy and domain type", () -> {
+                    Disjunction policy = policy("allow {\n  data.accountState.type == \"statement\"\n}\n");
+
+                    assertThat(PolicyPredicates.of(policy, Document.class), is(sameInstance(PolicyPredicates.of(policy, Document.class))));
+                });
+            });
+
+            Context("given a policy without conjunctions", () -> {
+
+                It("should never hold", () -> {
+                    Predicate<Document> policy = PolicyPredicates.of(BoolPredicates.disjunction(Collections.emptyList()), Document.class);
+
+                    assertThat(policy.test(new Document("statement", 1L, new Owner(1L))), is(false));
+                });
+            });
+
+            Context("given a policy with an empty conjunction", () -> {
+
+                It("should always hold, even on nulls", () -> {
+                    Predicate<Document> policy = PolicyPredicates.of(BoolPredicates.disjunction(Collections.singletonList(BoolPredicates.conjunction(Collections.emptyList()))), Document.class);
+
+                    assertThat(policy.test(new Document("statement", 1L, new Owner(1L))), is(true));
+                    assertThat(policy.test(new Document(null, null, null)), is(true));
+                });
+            });
+
+            Context("compared with the compiled query expression", () -> {
+
+                It("should give the same answer for the same policy and entity", () -> {
+                    List<Disjunction> policies = Arrays.asList(
+                            policy("allow {\n  data.accountState.type == \"statement\"\n}\n"),
+                            policy("allow {\n  data.accountState.broker.id == \"1L\"\n}\n", "allow {\n  data.accountState.broker.id == \"2L\"\n}\n"),
+                            policy("allow {\n  data.accountState.type != \"statement\"\n  data.accountState.size <= \"10L\"\n}\n",
+                                    "allow {\n  data.accountState.size > \"20L\"\n}\n"),
+                            policy("allow {\n  data.accountState.broker.id != \"1L\"\n}\n"),
+                            BoolPredicates.disjunction(Collections.emptyList()),
+                            BoolPredicates.disjunction(Collections.singletonList(BoolPredicates.conjunction(Collections.emptyList()))));
+                    List<Document> documents = Arrays.asList(
+                            new Document("statement", 5L, new Owner(1L)),
+                            new Document("invoice", 10L, new Owner(2L)),
+                            new Document("invoice", 11L, new Owner(3L)),
+                            new Document("invoice", 21L, null),
+                            new Document(null, 5L, new Owner(null)),
+                            new Document(null, null, null));
+
+                    CompiledPolicyCache cache = new CompiledPolicyCache();
+                    for (Disjunction policy : policies) {
+                        Predicate<Document> inMemory = PolicyPredicates.of(policy, Document.class);
+                        BooleanExpression compiled = cache.get(policy, Document.class, "entity");
+                        for (Document document : documents) {
+                            assertThat(String.format("%s on %s", compiled, document), inMemory.test(document), is(Boolean.TRUE.equals(evaluate(compiled, document))));
+                        }
+                    }
+                });
+            });
+
+            Context("given a policy on a property the domain type does not have", () -> {
+
+                It("should not compile", () -> {
+                    assertThat(PolicyPredicates.of(policy("allow {\n  data.accountState.owner == \"x\"\n}\n"), Document.class), is(nullValue()));
+                });
+            });
+        });
+    }
+
+    private static Disjunction policy(String... rules) {
+        StringBuilder rego = new StringBuilder("package predicates\n");
+        for (String rule : rules) {
+            rego.append(rule);
+        }
+        return new RegoPartialEvaluator(rego.toString()).compile("data.predicates.allow", Collections.emptyMap(), Collections.singletonList("data.accountState"));
+    }
+
+    // evaluates a compiled expression against an entity as SQL would, null standing for unknown
+    private static Object evaluate(Expression<?> expression, Object entity) {
+        if (expression instanceof Constant) {
+            return ((Constant<?>) expression).getConstant();
+        }
+        if (expression instanceof Path) {
+            PathMetadata metadata = ((Path<?>) expression).getMetadata();
+            if (metadata.isRoot()) {
+                return entity;
+            }
+            Object parent = evaluate(metadata.getParent(), entity);
+            return parent != null ? new BeanWrapperImpl(parent).getPropertyValue(metadata.getName()) : null;
+        }
+
+        Operation<?> operation = (Operation<?>) expression;
+        Operator operator = operation.getOperator();
+        if (operator == Ops.AND || operator == Ops.OR) {
+            Boolean decisive = operator == Ops.OR;
+            Boolean result = !decisive;
+            for (Expression<?> arg : operation.getArgs()) {
+                Boolean value = (Boolean) evaluate(arg, entity);
+                if (decisive.equals(value)) {
+                    return decisive;
+                }
+                if (value == null) {
+                    result = null;
+                }
+            }
+            return result;
+        }
+
+        Object left = evaluate(operation.getArg(0), entity);
+        Object right = evaluate(operation.getArg(1), entity);
+        if (left == null || right == null) {
+            return null;
+        }
+        if (operator == Ops.IN) {
+            return ((Collection<?>) right).contains(left);
+        }
+
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        int order = ((Comparable) left).compareTo(right);
+        if (operator == Ops.EQ) {
+            return order == 0;
+        } else if (operator == Ops.NE) {
+            return order != 0;
+        } else if (operator == Ops.LT) {
+            return order < 0;
+        } else if (operator == Ops.LOE) {
+            return order <= 0;
+        } else if (operator == Ops.GT) {
+            return order > 0;
+        } else if (operator == Ops.GOE) {
+            return order >= 0;
+        }
+        throw new UnsupportedOperationException(operator.toString());
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Document {
+        private String type;
+        private Long size;
+        private Owner broker;
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Owner {
+        @Id
+        private Long id;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.expressions.Disjunction;
+
+@RunWith(Ginkgo4jRunner.class)
+public class PolicyShapeTest {
+
+    {
+        Describe("PolicyShape", () -> {
+
+            Context("#of", () -> {
+
+                It("should have the same key for policies differing only in their constants", () -> {
+                    PolicyShape shape = PolicyShape.of(policy("1L", "2L", "x"));
+                    PolicyShape other = PolicyShape.of(policy("3L", "4L", "y"));
+
+                    assertThat(other.getKey(), is(shape.getKey()));
+                });
+
+                It("should have a different key for policies of a different structure", () -> {
+                    PolicyShape shape = PolicyShape.of(policy("1L", "2L", "x"));
+                    PolicyShape other = PolicyShape.of(compile("allow {\n  data.accountState.name == \"x\"\n}\n"));
+
+                    assertThat(other.getKey(), is(not(shape.getKey())));
+                });
+
+                It("should split the policy into membership and comparison slots", () -> {
+                    PolicyShape shape = PolicyShape.of(policy("1L", "2L", "x"));
+
+                    assertThat(shape.getMemberships().size(), is(1));
+                    assertThat(shape.getMemberships().get(0).getColumn(), is("broker.id"));
+                    assertThat(shape.getMemberships().get(0).isMembership(), is(true));
+                    assertThat(shape.getMemberships().get(0).getPredicates().size(), is(2));
+
+                    assertThat(shape.getConjunctions().size(), is(1));
+                    assertThat(shape.getConjunctions().get(0).size(), is(2));
+                    assertThat(shape.getConjunctions().get(0).get(0).getOperator(), is("="));
+
+                    assertThat(shape.getRemainder(), is(nullValue()));
+                    assertThat(shape.isEmpty(), is(false));
+                });
+
+                It("should tell policies without conjunctions apart from policies with an empty conjunction", () -> {
+                    PolicyShape empty = PolicyShape.of(BoolPredicates.disjunction(Collections.emptyList()));
+                    PolicyShape unconditional = PolicyShape.of(BoolPredicates.disjunction(Arrays.asList(
+                            BoolPredicates.conjunction(Collections.emptyList()),
+                            policy("1L", "2L", "x").getConjunctivePredicates().get(0))));
+
+                    assertThat(empty.isEmpty(), is(true));
+                    assertThat(empty.isUnconditional(), is(false));
+                    assertThat(unconditional.isEmpty(), is(false));
+                    assertThat(unconditional.isUnconditional(), is(true));
+                    assertThat(unconditional.getMemberships().isEmpty(), is(true));
+                    assertThat(unconditional.getConjunctions().isEmpty(), is(true));
+                    assertThat(unconditional.getRemainder(), is(nullValue()));
+                    assertThat(unconditional.getKey(), is(not(empty.getKey())));
+                });
+
+                It("should be memoized per policy", () -> {
+                    Disjunction policy = policy("1L", "2L", "x");
+
+                    assertThat(PolicyShape.of(policy), is(sameInstance(PolicyShape.of(policy))));
+                });
+            });
+        });
+    }
+
+    private static Disjunction policy(String broker, String otherBroker, String name) {
+        return compile(String.join("\n",
+                "allow {",
+                "  data.accountState.broker.id == \"" + broker + "\"",
+                "}",
+                "allow {",
+                "  data.accountState.broker.id == \"" + otherBroker + "\"",
+                "}",
+                "allow {",
+                "  data.accountState.type == \"" + name + "\"",
+                "  data.accountState.name == \"" + name + "\"",
+                "}"));
+    }
+
+    private static Disjunction compile(String rules) {
+        return new RegoPartialEvaluator("package shape\n" + rules).compile("data.shape.allow", Collections.emptyMap(), Collections.singletonList("data.accountState"));
+    }
+}
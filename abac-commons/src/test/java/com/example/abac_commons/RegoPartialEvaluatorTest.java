@@ -0,0 +1,100 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.AfterEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.runner.RunWith;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+@RunWith(Ginkgo4jRunner.class)
+public class RegoPartialEvaluatorTest {
+
+    private static final String QUERY = "data.abac_spike.allow_partial";
+
+    private RegoPartialEvaluator evaluator;
+    private Map<String, Object> input;
+    private JsonNode result;
+    private LocalOpaServer server;
+
+    {
+        Describe("RegoPartialEvaluator", () -> {
+
+            BeforeEach(() -> {
+                evaluator = RegoPartialEvaluator.fromBundle();
+                input = new HashMap<>();
+                input.put("brokerId", "5L");
+            });
+
+            Context("when the known parts of the policy hold", () -> {
+
+                BeforeEach(() -> {
+                    input.put("action", "GET");
+                    result = new ObjectMapper().readTree(evaluator.compileToJson(QUERY, input, Collections.singletonList("data.accountState")));
+                });
+
+                It("should return the residual over the unknowns", () -> {
+                    JsonNode queries = result.at("/result/queries");
+                    assertThat(queries.size(), is(1));
+                    assertThat(queries.get(0).size(), is(1));
+
+                    JsonNode terms = queries.get(0).get(0).get("terms");
+                    assertThat(terms.at("/0/value/0/value").asText(), is("equal"));
+                    assertThat(terms.at("/1/value/0/value").asText(), is("data"));
+                    assertThat(terms.at("/1/value/1/value").asText(), is("accountState"));
+                    assertThat(terms.at("/1/value/2/value").asText(), is("broker"));
+                    assertThat(terms.at("/1/value/3/value").asText(), is("id"));
+                    assertThat(terms.at("/2/type").asText(), is("string"));
+                    assertThat(terms.at("/2/value").asText(), is("5L"));
+                });
+            });
+
+            Context("when the known parts of the policy do not hold", () -> {
+
+                BeforeEach(() -> {
+                    input.put("action", "DELETE");
+                    result = new ObjectMapper().readTree(evaluator.compileToJson(QUERY, input, Collections.singletonList("data.accountState")));
+                });
+
+                It("should return no queries", () -> {
+                    assertThat(result.at("/result/queries").isMissingNode(), is(true));
+                });
+            });
+
+            Context("when served over HTTP", () -> {
+
+                BeforeEach(() -> {
+                    server = LocalOpaServer.start(evaluator);
+                    input.put("action", "GET");
+                });
+
+                AfterEach(() -> {
+                    server.close();
+                });
+
+                It("should answer compile requests like OPA", () -> {
+                    Map<String, Object> request = new HashMap<>();
+                    request.put("query", QUERY);
+                    request.put("input", input);
+                    request.put("unknowns", Collections.singletonList("data.accountState"));
+
+                    String response = new RestTemplate().postForObject(server.getUrl() + "/v1/compile", request, String.class);
+
+                    assertThat(response, is(evaluator.compileToJson(QUERY, input, Collections.singletonList("data.accountState"))));
+                });
+            });
+        });
+    }
+}
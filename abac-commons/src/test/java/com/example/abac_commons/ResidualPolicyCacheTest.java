@@ -0,0 +1,64 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.expressions.Disjunction;
+
+@RunWith(Ginkgo4jRunner.class)
+public class ResidualPolicyCacheTest {
+
+    private ResidualPolicyCompiler compiler;
+    private ResidualPolicyCache cache;
+    private Disjunction policy;
+
+    {
+        Describe("ResidualPolicyCache", () -> {
+
+            BeforeEach(() -> {
+                policy = mock(Disjunction.class);
+                compiler = mock(ResidualPolicyCompiler.class);
+                when(compiler.compile(any())).thenReturn(policy);
+
+                cache = new ResidualPolicyCache(compiler);
+            });
+
+            It("should compile each input once", () -> {
+                assertThat(cache.get(input("GET", "1L")), is(sameInstance(policy)));
+                assertThat(cache.get(input("GET", "1L")), is(sameInstance(policy)));
+
+                verify(compiler, times(1)).compile(input("GET", "1L"));
+            });
+
+            It("should compile distinct inputs separately", () -> {
+                cache.get(input("GET", "1L"));
+                cache.get(input("GET", "2L"));
+
+                verify(compiler, times(2)).compile(any());
+            });
+        });
+    }
+
+    private static Map<String, Object> input(String action, String brokerId) {
+        Map<String, Object> input = new HashMap<>();
+        input.put("action", action);
+        input.put("brokerId", brokerId);
+        return input;
+    }
+}
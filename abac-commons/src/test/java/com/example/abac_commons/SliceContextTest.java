@@ -0,0 +1,55 @@
+package com.example.abac_commons;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.runner.RunWith;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+@RunWith(Ginkgo4jRunner.class)
+public class SliceContextTest {
+
+    {
+        Describe("SliceContext", () -> {
+
+            Context("#page", () -> {
+
+                It("should trim the extra row and have a next page", () -> {
+                    Page<String> page = SliceContext.page(Arrays.asList("a", "b", "c"), PageRequest.of(4, 2));
+
+                    assertThat(page.getContent(), is(Arrays.asList("a", "b")));
+                    assertThat(page.hasNext(), is(true));
+                    assertThat(page.getNumber(), is(4));
+                });
+
+                It("should not have a next page when there is no extra row", () -> {
+                    Page<String> page = SliceContext.page(Arrays.asList("a", "b"), PageRequest.of(4, 2));
+
+                    assertThat(page.getContent(), is(Arrays.asList("a", "b")));
+                    assertThat(page.hasNext(), is(false));
+                    assertThat(page.getTotalElements(), is(10L));
+                });
+            });
+
+            It("should only be sliced when opted in", () -> {
+                assertThat(SliceContext.isSliced(), is(false));
+
+                SliceContext.setSliced(true);
+                try {
+                    assertThat(SliceContext.isSliced(), is(true));
+                } finally {
+                    SliceContext.clear();
+                }
+                assertThat(SliceContext.isSliced(), is(false));
+            });
+        });
+    }
+}
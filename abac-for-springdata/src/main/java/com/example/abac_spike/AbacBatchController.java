@@ -0,0 +1,73 @@
+package com.example.abac_spike;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.core.EntityInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.example.abac_commons.ABACRouteTable;
+import com.example.abac_commons.BatchIds;
+
+/**
+ * Looks up many entities of a protected repository at once, with a single {@code findAllById} that the aspect
+ * restricts to {@code id in (...) and <policy>}.
+ *
+ * Requested ids that are not returned are listed as unavailable, whether they do not exist or are denied by the
+ * policy, so a response does not reveal which.
+ */
+@ResponseBody
+@RequestMapping
+public class AbacBatchController {
+
+    public static final String PATH = ABACRouteTable.BATCH_PATH;
+
+    public static final int MAX_IDS = ABACRouteTable.MAX_BATCH_IDS;
+
+    private final ABACRouteTable routes;
+    private final Repositories repositories;
+
+    public AbacBatchController(ABACRouteTable routes, Repositories repositories) {
+        this.routes = routes;
+        this.repositories = repositories;
+    }
+
+    @GetMapping(PATH)
+    public ResponseEntity<Map<String, Object>> findAllById(@PathVariable String repository, @RequestParam("ids") List<String> ids) {
+
+        EntityInformation ei = routes.lookup(repository);
+        if (ei == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Set<String> requested = new LinkedHashSet<>(ids);
+        if (requested.size() > MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Optional<Object> repo = repositories.getRepositoryFor(ei.getJavaType());
+        if (!repo.isPresent() || !(repo.get() instanceof CrudRepository)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        BatchIds batchIds;
+        try {
+            batchIds = BatchIds.of(requested, ei.getIdType());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Iterable<?> found = ((CrudRepository) repo.get()).findAllById(batchIds.typed());
+        return ResponseEntity.ok(batchIds.result(found, ei));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.abac_spike;
+
+import java.beans.PropertyDescriptor;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.repository.core.EntityInformation;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.example.abac_commons.ABACRouteTable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Exports every entity of a protected repository visible under the request's ABAC context, as NDJSON or CSV.
+ *
+ * Rows are serialized to the response as they are read by {@link AbacStreams}, on the request thread so that the
+ * ABAC context applies, and heap use does not depend on the size of the export. CSV exports carry the entity's
+ * simple properties only.
+ */
+@ResponseBody
+@RequestMapping
+public class AbacExportController {
+
+    public static final String PATH = "/{repository}/export";
+
+    public static final String NDJSON = "ndjson";
+    public static final String CSV = "csv";
+
+    private final ABACRouteTable routes;
+    private final AbacStreams streams;
+    private final ObjectWriter writer;
+
+    public AbacExportController(ABACRouteTable routes, AbacStreams streams, ObjectMapper mapper) {
+        this.routes = routes;
+        this.streams = streams;
+        this.writer = mapper.writer();
+    }
+
+    @GetMapping(PATH)
+    public void export(@PathVariable String repository, @RequestParam(defaultValue = NDJSON) String format, HttpServletResponse response) throws IOException {
+
+        EntityInformation<?, ?> ei = routes.lookup(repository);
+        if (ei == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!NDJSON.equals(format) && !CSV.equals(format)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "format must be ndjson or csv");
+            return;
+        }
+
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(NDJSON.equals(format) ? "application/x-ndjson" : "text/csv");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + repository + "." + format + "\"");
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        if (NDJSON.equals(format)) {
+            streams.forEach(ei.getJavaType(), entity -> ndjson(out, entity));
+        } else {
+            List<PropertyDescriptor> columns = columns(ei.getJavaType());
+            csvHeader(out, columns);
+            streams.forEach(ei.getJavaType(), entity -> csv(out, columns, entity));
+        }
+        out.flush();
+    }
+
+    private void ndjson(Writer out, Object entity) {
+        try {
+            out.write(writer.writeValueAsString(entity));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<PropertyDescriptor> columns(Class<?> domainType) {
+        List<PropertyDescriptor> columns = new ArrayList<>();
+        for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(domainType)) {
+            if (pd.getReadMethod() != null && !"class".equals(pd.getName()) && BeanUtils.isSimpleValueType(pd.getPropertyType())) {
+                columns.add(pd);
+            }
+        }
+        return columns;
+    }
+
+    private static void csvHeader(Writer out, List<PropertyDescriptor> columns) throws IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(csvField(columns.get(i).getName()));
+        }
+        out.write("\r\n");
+    }
+
+    private static void csv(Writer out, List<PropertyDescriptor> columns, Object entity) {
+        try {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Method read = columns.get(i).getReadMethod();
+                out.write(csvField(ReflectionUtils.invokeMethod(read, entity)));
+            }
+            out.write("\r\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // RFC 4180: quote fields containing separators, quotes or line breaks, doubling the quotes
+    static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String s = value.toString();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return '"' + s.replace("\"", "\"\"") + '"';
+            }
+        }
+        return s;
+    }
+}
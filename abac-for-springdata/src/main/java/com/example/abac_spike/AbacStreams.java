@@ -0,0 +1,98 @@
+package com.example.abac_spike;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.hibernate.annotations.QueryHints;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.abac_commons.ABACContext;
+import com.example.abac_commons.AbacMetrics;
+import com.example.abac_commons.CompiledPolicyCache;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import io.micrometer.core.instrument.Timer;
+
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Streams every entity of a domain type visible under the current ABAC context, in constant memory.
+ *
+ * The policy is applied once, in the query. Rows are read through a forward-only cursor with a fetch size, and the
+ * persistence context is cleared every fetch size entities, so actions must not hold on to the entities they are
+ * handed.
+ */
+public class AbacStreams {
+
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    private static final String ENTITY_ALIAS = "entity";
+
+    private final EntityManager em;
+    private final PlatformTransactionManager ptm;
+    private final CompiledPolicyCache policyCache;
+    private final AbacMetrics metrics;
+    private final int fetchSize;
+
+    public AbacStreams(EntityManager em, PlatformTransactionManager ptm, CompiledPolicyCache policyCache, AbacMetrics metrics) {
+        this(em, ptm, policyCache, metrics, DEFAULT_FETCH_SIZE);
+    }
+
+    public AbacStreams(EntityManager em, PlatformTransactionManager ptm, CompiledPolicyCache policyCache, AbacMetrics metrics, int fetchSize) {
+        this.em = em;
+        this.ptm = ptm;
+        this.policyCache = policyCache;
+        this.metrics = metrics;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Hands each entity to the action as it is read, in a read-only transaction.
+     *
+     * @return the number of entities streamed
+     */
+    public <T> long forEach(Class<T> domainType, Consumer<? super T> action) {
+        TransactionTemplate readOnly = new TransactionTemplate(ptm);
+        readOnly.setReadOnly(true);
+
+        Timer.Sample sample = metrics.start();
+        try {
+            return readOnly.execute(status -> stream(domainType, action));
+        } finally {
+            metrics.stop(sample, AbacMetrics.QUERY, domainType, "export");
+        }
+    }
+
+    private <T> long stream(Class<T> domainType, Consumer<? super T> action) {
+        PathBuilder<T> entityPath = policyCache.entityPath(domainType, ENTITY_ALIAS);
+
+        JPAQuery<T> q = new JPAQueryFactory(em).selectFrom(entityPath);
+        Disjunction abacContext = ABACContext.getCurrentAbacContext();
+        if (abacContext != null) {
+            q.where(policyCache.get(abacContext, domainType, ENTITY_ALIAS));
+        }
+
+        Query query = q.createQuery();
+        query.setHint(QueryHints.FETCH_SIZE, fetchSize);
+        query.setHint(QueryHints.READ_ONLY, true);
+
+        long count = 0;
+        try (Stream<T> rows = query.getResultStream()) {
+            Iterator<T> it = rows.iterator();
+            while (it.hasNext()) {
+                action.accept(it.next());
+                if (++count % fetchSize == 0) {
+                    em.clear();
+                }
+            }
+        }
+        return count;
+    }
+}
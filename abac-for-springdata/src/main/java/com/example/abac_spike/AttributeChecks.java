@@ -0,0 +1,84 @@
+package com.example.abac_spike;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.example.abac_commons.BoolPredicates;
+import com.example.abac_commons.PropertyAccessor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import be.heydari.lib.expressions.BoolPredicate;
+import be.heydari.lib.expressions.Conjunction;
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Checks that the attributes of an entity satisfy every predicate of a residual policy.
+ *
+ * Property paths such as {@code broker.id} resolve once per entity class to {@link PropertyAccessor}s, and
+ * policy constants, with their literal suffixes, are converted to the property types once per policy and entity
+ * class. Policies are held weakly with the decoded policy the decoder caches, so a check of a repeated policy is a
+ * loop over prepared comparisons, without reflection, conversion or allocation. Predicates on properties the entity
+ * does not have are ignored, and a null along a property path fails the check.
+ */
+final class AttributeChecks {
+
+    private static final Cache<Disjunction, Map<Class<?>, Check[]>> checks = Caffeine.newBuilder()
+            .weakKeys()
+            .build();
+
+    private AttributeChecks() {}
+
+    /**
+     * @throws SecurityException when the entity does not satisfy the policy
+     */
+    static void enforce(Object entity, Disjunction policy) {
+        for (Check check : checks(policy, entity.getClass())) {
+            if (!check.matches(entity)) {
+                throw new SecurityException();
+            }
+        }
+    }
+
+    static Check[] checks(Disjunction policy, Class<?> entityType) {
+        return checks.get(policy, p -> new ConcurrentHashMap<>()).computeIfAbsent(entityType, type -> compile(policy, type));
+    }
+
+    private static Check[] compile(Disjunction policy, Class<?> entityType) {
+        List<Check> compiled = new ArrayList<>();
+        for (Conjunction conjunction : policy.getConjunctivePredicates()) {
+            for (BoolPredicate predicate : conjunction.getPredicates()) {
+                PropertyAccessor accessor = PropertyAccessor.of(entityType, BoolPredicates.column(predicate));
+                if (accessor != null) {
+                    compiled.add(new Check(accessor, BoolPredicates.typedValue(predicate, accessor.getType())));
+                }
+            }
+        }
+        return compiled.toArray(new Check[0]);
+    }
+
+    static final class Check {
+
+        private final PropertyAccessor accessor;
+        private final Object expected;
+
+        Check(PropertyAccessor accessor, Object expected) {
+            this.accessor = accessor;
+            this.expected = expected;
+        }
+
+        /**
+         * @throws SecurityException when a property along the path is null
+         */
+        boolean matches(Object entity) {
+            Object value = accessor.get(entity);
+            if (value == PropertyAccessor.ABSENT) {
+                throw new SecurityException();
+            }
+            return Objects.equals(expected, value);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.abac_spike;
+
+import static java.lang.String.format;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque continuation tokens for keyset pagination, encoding the sort key values and id of the last entity of a
+ * page.
+ *
+ * Tokens are not signed: a forged token only moves the seek position, the policy is applied to every page.
+ */
+public final class ContinuationToken {
+
+    private static final char SEPARATOR = '.';
+    // not in the url safe base64 alphabet, so it cannot be mistaken for an encoded value
+    private static final String NULL = "~";
+
+    private ContinuationToken() {}
+
+    public static String encode(List<String> values) {
+        StringBuilder token = new StringBuilder();
+        for (String value : values) {
+            if (token.length() > 0) {
+                token.append(SEPARATOR);
+            }
+            token.append(value == null ? NULL : Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8)));
+        }
+        return token.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token is malformed or does not have the expected number of values
+     */
+    public static List<String> decode(String token, int size) {
+        List<String> values = new ArrayList<>(size);
+        int start = 0;
+        while (start <= token.length()) {
+            int end = token.indexOf(SEPARATOR, start);
+            if (end == -1) {
+                end = token.length();
+            }
+            String value = token.substring(start, end);
+            values.add(NULL.equals(value) ? null : new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8));
+            start = end + 1;
+        }
+        if (values.size() != size) {
+            throw new IllegalArgumentException(format("continuation token has %d values, expected %d", values.size(), size));
+        }
+        return values;
+    }
+}
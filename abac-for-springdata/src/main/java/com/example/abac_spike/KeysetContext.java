@@ -0,0 +1,50 @@
+package com.example.abac_spike;
+
+import java.util.function.Consumer;
+
+/**
+ * Opt-in keyset (seek) pagination for the current request.
+ *
+ * Requests sending a {@value #CONTINUATION_PARAMETER} parameter, empty for the first page, are paged by seeking past
+ * the sort key and id of the last entity of the previous page rather than by offset, so every page costs the same
+ * however deep it is. The token of the next page is handed to {@link #next(String)} before the page is rendered
+ * and returned in the {@value #CONTINUATION_HEADER} header; it is absent on the last page.
+ */
+public final class KeysetContext {
+
+    public static final String CONTINUATION_PARAMETER = "continuation";
+    public static final String CONTINUATION_HEADER = "X-ABAC-Continuation";
+
+    private static ThreadLocal<KeysetContext> currentKeysetContext = new ThreadLocal<KeysetContext>();
+
+    private final String continuation;
+    private final Consumer<String> next;
+
+    public KeysetContext(String continuation, Consumer<String> next) {
+        this.continuation = continuation;
+        this.next = next;
+    }
+
+    public static KeysetContext getCurrentKeysetContext() {
+        return currentKeysetContext.get();
+    }
+
+    public static void setCurrentKeysetContext(KeysetContext keyset) {
+        currentKeysetContext.set(keyset);
+    }
+
+    public static void clear() {
+        currentKeysetContext.remove();
+    }
+
+    /**
+     * @return the continuation token of the requested page, or null for the first page
+     */
+    public String getContinuation() {
+        return continuation;
+    }
+
+    public void next(String token) {
+        next.accept(token);
+    }
+}
@@ -3,51 +3,79 @@ package com.example.abac_spike;
 import static java.lang.String.format;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Id;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
-import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
 import org.springframework.beans.BeanWrapper;
 import org.springframework.beans.BeanWrapperImpl;
-import org.springframework.beans.InvalidPropertyException;
 import org.springframework.beans.NullValueInNestedPathException;
 import org.springframework.content.commons.utils.BeanUtils;
+import org.springframework.core.convert.ConversionException;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyReferenceException;
 import org.springframework.data.repository.core.EntityInformation;
+import org.springframework.http.HttpStatus;
 import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.transaction.TransactionDefinition;
-import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
-
+import org.springframework.util.ClassUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.abac_commons.ABACContext;
+import com.example.abac_commons.ABACContextExecutors;
+import com.example.abac_commons.AbacDeletes;
+import com.example.abac_commons.AbacMetrics;
+import com.example.abac_commons.BoolPredicates;
+import com.example.abac_commons.CompiledPolicyCache;
+import com.example.abac_commons.EntityContext;
+import com.example.abac_commons.EntityMemo;
+import com.example.abac_commons.PolicyShape;
+import com.example.abac_commons.SliceContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpression;
 import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.PathBuilder;
-import com.querydsl.jpa.impl.JPADeleteClause;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 
+import io.micrometer.core.instrument.Timer;
+
 import be.heydari.lib.converters.criteriaquery.CriteriaQueryUtils;
 import be.heydari.lib.converters.jpql.JPQLUtils;
-import be.heydari.lib.converters.querydsl.QueryDslUtils;
 import be.heydari.lib.expressions.BoolPredicate;
-import be.heydari.lib.expressions.Conjunction;
 import be.heydari.lib.expressions.Disjunction;
 import lombok.Getter;
 import lombok.Setter;
@@ -57,12 +85,52 @@ public class QueryAugmentingABACAspect {
 
     private static final String ID_MUST_NOT_BE_NULL = "The given id must not be null!";
 
+    private static final String ENTITY_ALIAS = "entity";
+
+    private static final ConversionService conversionService = DefaultConversionService.getSharedInstance();
+
+    // alias given to queries that select from an entity without naming it, e.g. "delete from AccountState"
+    private static final String SYNTHETIC_ALIAS = "abac";
+
+    private static final long MAXIMUM_REWRITES = 1000;
+
+    // the conditions policies allowing nothing and everything are rendered as
+    private static final String DENY_ALL_JPQL = "1 = 0";
+    private static final String ALLOW_ALL_JPQL = "1 = 1";
+
     private final EntityManager em;
     private final PlatformTransactionManager ptm;
+    private final CompiledPolicyCache policyCache;
+    private final AbacMetrics metrics;
+    private final AbacDeletes deletes;
+    private final Cache<RewriteKey, Rewrite> rewrites = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_REWRITES)
+            .build();
+
+    private Executor countExecutor;
 
     public QueryAugmentingABACAspect(EntityManager em, PlatformTransactionManager ptm) {
+        this(em, ptm, new CompiledPolicyCache());
+    }
+
+    public QueryAugmentingABACAspect(EntityManager em, PlatformTransactionManager ptm, CompiledPolicyCache policyCache) {
+        this(em, ptm, policyCache, new AbacMetrics());
+    }
+
+    public QueryAugmentingABACAspect(EntityManager em, PlatformTransactionManager ptm, CompiledPolicyCache policyCache, AbacMetrics metrics) {
         this.em = em;
         this.ptm = ptm;
+        this.policyCache = policyCache;
+        this.metrics = metrics;
+        this.deletes = new AbacDeletes(em, ptm, policyCache, metrics);
+    }
+
+    /**
+     * Runs the count query of a page concurrently with the page query, on the given executor's threads and their
+     * own connections, instead of after it on the request thread. Null, the default, runs them sequentially.
+     */
+    public void setCountExecutor(Executor countExecutor) {
+        this.countExecutor = countExecutor != null ? ABACContextExecutors.wrap(countExecutor) : null;
     }
 
     @Around("execution(* org.springframework.data.repository.CrudRepository.findById(..))")
@@ -76,11 +144,19 @@ public class QueryAugmentingABACAspect {
         Object id = jp.getArgs()[0];
         Assert.notNull(id, ID_MUST_NOT_BE_NULL);
 
-        PathBuilder entityPath = new PathBuilder(EntityContext.getCurrentEntityContext().getJavaType(), "entity");
+        Class<?> domainType = EntityContext.getCurrentEntityContext().getJavaType();
+        Optional<Object> memoized = EntityMemo.get(domainType, id, abacContext);
+        if (memoized != null) {
+            return memoized;
+        }
+
+        PathBuilder entityPath = policyCache.entityPath(domainType, ENTITY_ALIAS);
 
         BooleanExpression idExpr = idExpr(id, entityPath);
 
-        BooleanExpression abacExpr = QueryDslUtils.from(abacContext,entityPath,EntityContext.getCurrentEntityContext().getJavaType());
+        Timer.Sample sample = metrics.start();
+        BooleanExpression abacExpr = policyCache.get(abacContext, domainType, ENTITY_ALIAS);
+        metrics.stop(sample, AbacMetrics.PREDICATE, domainType, "findById");
         Assert.notNull(abacExpr, "abac expression cannot be null");
 
         idExpr = idExpr.and(abacExpr);
@@ -91,7 +167,52 @@ public class QueryAugmentingABACAspect {
             q.where(idExpr);
         }
 
-        return Optional.ofNullable(q.fetchOne());
+        sample = metrics.start();
+        try {
+            Optional<Object> entity = Optional.ofNullable(q.fetchOne());
+            EntityMemo.put(domainType, id, abacContext, entity);
+            return entity;
+        } finally {
+            metrics.stop(sample, AbacMetrics.QUERY, domainType, "findById");
+        }
+    }
+
+    @Around("execution(* org.springframework.data.repository.CrudRepository.findAllById(..))")
+    public Object findAllById(ProceedingJoinPoint jp) throws Throwable {
+
+        Disjunction abacContext = ABACContext.getCurrentAbacContext();
+        if (abacContext == null) {
+            return jp.proceed(jp.getArgs());
+        }
+
+        Iterable<?> ids = (Iterable<?>) jp.getArgs()[0];
+        Assert.notNull(ids, "The given Iterable of Id's must not be null!");
+
+        List<Object> idList = new ArrayList<>();
+        ids.forEach(idList::add);
+        if (idList.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Class<?> domainType = EntityContext.getCurrentEntityContext().getJavaType();
+        PathBuilder entityPath = policyCache.entityPath(domainType, ENTITY_ALIAS);
+
+        Field idField = BeanUtils.findFieldWithAnnotation(domainType, Id.class);
+        BooleanExpression idsExpr = entityPath.get(idField.getName()).in(idList);
+
+        Timer.Sample sample = metrics.start();
+        BooleanExpression abacExpr = policyCache.get(abacContext, domainType, ENTITY_ALIAS);
+        metrics.stop(sample, AbacMetrics.PREDICATE, domainType, "findAllById");
+        Assert.notNull(abacExpr, "abac expression cannot be null");
+
+        JPAQuery q = new JPAQueryFactory(em).selectFrom(entityPath).where(idsExpr.and(abacExpr));
+
+        sample = metrics.start();
+        try {
+            return q.fetch();
+        } finally {
+            metrics.stop(sample, AbacMetrics.QUERY, domainType, "findAllById");
+        }
     }
 
     @Around("execution(* org.springframework.data.repository.PagingAndSortingRepository.findAll(org.springframework.data.domain.Pageable))")
@@ -103,20 +224,39 @@ public class QueryAugmentingABACAspect {
         }
 
         Pageable pageable = (Pageable) jp.getArgs()[0];
-        PathBuilder entityPath = new PathBuilder(EntityContext.getCurrentEntityContext().getJavaType(), "entity");
+        Class<?> domainType = EntityContext.getCurrentEntityContext().getJavaType();
+        PathBuilder entityPath = policyCache.entityPath(domainType, ENTITY_ALIAS);
 
-        BooleanExpression abacExpr = QueryDslUtils.from(abacContext, entityPath, EntityContext.getCurrentEntityContext().getJavaType());
+        Timer.Sample sample = metrics.start();
+        BooleanExpression abacExpr = policyCache.get(abacContext, domainType, ENTITY_ALIAS);
+        metrics.stop(sample, AbacMetrics.PREDICATE, domainType, "findAll");
         Assert.notNull(abacExpr, "abac expression cannot be null");
 
+        KeysetContext keyset = KeysetContext.getCurrentKeysetContext();
+        if (keyset != null && pageable.isPaged()) {
+            return seek(entityPath, domainType, abacExpr, pageable, keyset);
+        }
+
         JPAQueryFactory queryFactory = new JPAQueryFactory(em);
         JPAQuery q = queryFactory.selectFrom(entityPath);
         if (abacExpr != null) {
             q.where(abacExpr);
         }
 
+        // a count free page fetches one more entity to tell whether there is a next page
+        boolean sliced = SliceContext.isSliced() && pageable.isPaged();
+
+        JPAQuery countQuery = null;
+        if (!sliced && pageable.isPaged() && countExecutor != null) {
+            countQuery = queryFactory.selectFrom(entityPath);
+            if (abacExpr != null) {
+                countQuery.where(abacExpr);
+            }
+        }
+
         if (pageable.isPaged()) {
             q.offset(pageable.getOffset());
-            q.limit(pageable.getPageSize());
+            q.limit(sliced ? pageable.getPageSize() + 1 : pageable.getPageSize());
         }
         if (pageable.getSort().isSorted()) {
             for (int i = 0; i < pageable.getSort().toList().size(); i++) {
@@ -129,62 +269,219 @@ public class QueryAugmentingABACAspect {
             }
         }
 
-        QueryResults results = q.fetchResults();
-        return new PageImpl(results.getResults(), pageable, results.getTotal());
+        sample = metrics.start();
+        try {
+            if (sliced) {
+                return SliceContext.page(q.fetch(), pageable);
+            }
+            if (countQuery != null) {
+                CompletableFuture<Long> total = count(countQuery);
+                List<?> content = q.fetch();
+                return new PageImpl(content, pageable, join(total));
+            }
+            QueryResults results = q.fetchResults();
+            return new PageImpl(results.getResults(), pageable, results.getTotal());
+        } finally {
+            metrics.stop(sample, AbacMetrics.QUERY, domainType, "findAll");
+        }
+    }
+
+    /**
+     * Starts the count query on the count executor, in a read-only transaction of its own. The shared entity
+     * manager binds the worker to its own connection, so the page query can run meanwhile on the request thread.
+     */
+    private CompletableFuture<Long> count(JPAQuery countQuery) {
+        TransactionTemplate readOnly = new TransactionTemplate(ptm);
+        readOnly.setReadOnly(true);
+
+        return CompletableFuture.supplyAsync(() -> readOnly.execute(status -> countQuery.fetchCount()), countExecutor);
+    }
+
+    private static long join(CompletableFuture<Long> future) throws Throwable {
+        try {
+            return future.join();
+        } catch (CompletionException ce) {
+            throw ce.getCause();
+        }
+    }
+
+    /**
+     * Fetches the page following the continuation token, ordered by the requested sort and the id, without counting
+     * or skipping the entities of the previous pages. Null sort keys sort last. Unknown sort properties and tokens
+     * that do not decode to the sort's values are rejected with a 400.
+     */
+    Page<?> seek(PathBuilder entityPath, Class<?> domainType, BooleanExpression abacExpr, Pageable pageable, KeysetContext keyset) {
+
+        // the id makes the sort key unique, so seeking past it never skips or repeats entities
+        String idProperty = BeanUtils.findFieldWithAnnotation(domainType, Id.class).getName();
+        Sort sort = pageable.getSort();
+        if (sort.getOrderFor(idProperty) == null) {
+            sort = sort.and(Sort.by(idProperty));
+        }
+
+        List<Sort.Order> orders = sort.toList();
+        List<ComparableExpression> keys = new ArrayList<>(orders.size());
+        List<Class<?>> types = new ArrayList<>(orders.size());
+        for (Sort.Order order : orders) {
+            Class<?> type;
+            try {
+                type = ClassUtils.resolvePrimitiveIfNecessary(BoolPredicates.propertyType(domainType, order.getProperty()));
+            } catch (PropertyReferenceException pre) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, pre.getMessage(), pre);
+            }
+            if (!Comparable.class.isAssignableFrom(type)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, format("cannot sort by %s", order.getProperty()));
+            }
+            keys.add(comparable(entityPath, order.getProperty(), type));
+            types.add(type);
+        }
+
+        BooleanExpression where = abacExpr;
+        if (keyset.getContinuation() != null) {
+            List<String> values;
+            List<Comparable> keyValues = new ArrayList<>(orders.size());
+            try {
+                values = ContinuationToken.decode(keyset.getContinuation(), orders.size());
+                for (int i = 0; i < orders.size(); i++) {
+                    keyValues.add(values.get(i) != null ? (Comparable) conversionService.convert(values.get(i), types.get(i)) : null);
+                }
+            } catch (IllegalArgumentException | ConversionException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid continuation token", e);
+            }
+
+            // nulls sort last, so only nulls follow a null key and nulls follow every other value
+            BooleanExpression after = null;
+            for (int i = orders.size() - 1; i >= 0; i--) {
+                Comparable value = keyValues.get(i);
+                ComparableExpression key = keys.get(i);
+                BooleanExpression same = value != null ? key.eq(value) : key.isNull();
+                BooleanExpression past = value != null ? (orders.get(i).isAscending() ? key.gt(value) : key.lt(value)).or(key.isNull()) : null;
+                BooleanExpression tied = after != null ? same.and(after) : null;
+                after = past == null ? tied : tied == null ? past : past.or(tied);
+            }
+            if (after != null) {
+                where = where == null ? after : where.and(after);
+            }
+        }
+
+        JPAQuery<?> q = new JPAQueryFactory(em).selectFrom(entityPath);
+        if (where != null) {
+            q.where(where);
+        }
+        for (int i = 0; i < orders.size(); i++) {
+            q.orderBy(orders.get(i).isAscending() ? keys.get(i).asc().nullsLast() : keys.get(i).desc().nullsLast());
+        }
+
+        // one more than the page size tells whether there is a next page
+        q.limit(pageable.getPageSize() + 1);
+
+        Timer.Sample sample = metrics.start();
+        List<?> results;
+        try {
+            results = q.fetch();
+        } finally {
+            metrics.stop(sample, AbacMetrics.QUERY, domainType, "findAll");
+        }
+
+        Page<?> page = SliceContext.page(results, PageRequest.of(0, pageable.getPageSize(), pageable.getSort()));
+        if (page.hasNext()) {
+            BeanWrapper last = new BeanWrapperImpl(page.getContent().get(page.getNumberOfElements() - 1));
+            List<String> values = new ArrayList<>(orders.size());
+            for (Sort.Order order : orders) {
+                values.add(conversionService.convert(propertyValue(last, order.getProperty()), String.class));
+            }
+            keyset.next(ContinuationToken.encode(values));
+        }
+        return page;
+    }
+
+    private static Object propertyValue(BeanWrapper entity, String property) {
+        try {
+            return entity.getPropertyValue(property);
+        } catch (NullValueInNestedPathException e) {
+            return null;
+        }
+    }
+
+    private static ComparableExpression comparable(PathBuilder entityPath, String property, Class type) {
+        String[] segments = property.split("\\.");
+        PathBuilder path = entityPath;
+        for (int i = 0; i < segments.length - 1; i++) {
+            path = path.get(segments[i]);
+        }
+        return path.getComparable(segments[segments.length - 1], type);
     }
 
     @Around("execution(* javax.persistence.EntityManager.createQuery(java.lang.String))")
     public Object createQueryFromString(ProceedingJoinPoint joinPoint) throws Throwable {
 
         Disjunction abacContext = ABACContext.getCurrentAbacContext();
+        if (abacContext == null) {
+            return joinPoint.proceed(joinPoint.getArgs());
+        }
 
-        QueryAST ast = QueryAST.fromQueryString((String) joinPoint.getArgs()[0]);
+        String query = (String) joinPoint.getArgs()[0];
 
-        if (ast.getWhere() == null) {
-           ast.setWhere(JPQLUtils.from(abacContext, ast.getAlias()));
-        } else {
-            for (Conjunction conjunction : abacContext.getConjunctivePredicates()) {
-                for (BoolPredicate predicate : conjunction.getPredicates()) {
-                    Pattern pattern = Pattern.compile("^.*(?<field>" + ast.getAlias() + "\\." + predicate.getLeft().getColumn() + ").*$");
-                    Matcher matcher = pattern.matcher(ast.getWhere());
-
-                    // only add if the field is not already in the where clause
-                    if (!matcher.find()) {
-                        ast.setWhere(format("%s and %s", ast.getWhere(), JPQLUtils.from(abacContext, ast.getAlias())));
-                    }
-                }
-            }
+        Timer.Sample sample = metrics.start();
+        PolicyShape shape = PolicyShape.of(abacContext);
+        Rewrite rewrite = rewrites.get(new RewriteKey(shape.getKey(), query), k -> rewrite(query, abacContext));
+        List<Object> values = jpqlValues(shape, domainType());
+        metrics.stop(sample, AbacMetrics.PREDICATE, domainType(), "jpql");
+
+        return rewrite.getParameters().bind((Query) joinPoint.proceed(new String[]{rewrite.getQuery()}), values);
+    }
+
+    /**
+     * And's the policy onto the where clause of the query, exactly once, with parameters for the policy values.
+     * The result only depends on the query and the shape of the policy.
+     */
+    Rewrite rewrite(String query, Disjunction abacContext) {
+
+        QueryAST ast = QueryAST.fromQueryString(query);
+        if (ast.getType() == null) {
+            throw new IllegalStateException(format("Unable to apply ABAC policy to query without an entity: %s", query));
+        }
+        if (ast.getAlias() == null) {
+            ast.setAlias(SYNTHETIC_ALIAS);
         }
 
-        return joinPoint.proceed(new String[]{ast.toString()});
+        // JPQL does not allow mixing positional and named parameters
+        JpqlParameters parameters = new JpqlParameters(ast.getMaxOrdinal() > 0 ? ast.getMaxOrdinal() + 1 : 0);
+
+        ast.and(jpql(abacContext, ast.getAlias(), parameters));
+        return new Rewrite(ast.toString(), parameters);
     }
 
-    @Before("execution(* javax.persistence.EntityManager.createQuery(javax.persistence.criteria.CriteriaQuery))")
-    public void createQueryFromCriteriaQuery(JoinPoint joinPoint) {
+    @Around("execution(* javax.persistence.EntityManager.createQuery(javax.persistence.criteria.CriteriaQuery))")
+    public Object createQueryFromCriteriaQuery(ProceedingJoinPoint joinPoint) throws Throwable {
 
         Disjunction abacContext = ABACContext.getCurrentAbacContext();
+        if (abacContext == null) {
+            return joinPoint.proceed(joinPoint.getArgs());
+        }
 
-        try {
-            Object[] args = joinPoint.getArgs();
-            CriteriaQuery cq = (CriteriaQuery) args[0];
-            Predicate existingPredicate = cq.getRestriction();
+        // failing to apply the policy fails the query, it never runs unrestricted
+        Map<ParameterExpression<?>, Object> bindings = new LinkedHashMap<>();
 
-            CriteriaBuilder cb = ((EntityManager) joinPoint.getTarget()).getCriteriaBuilder();
-            Root<?> r = (Root<?>) cq.getRoots().toArray()[0];
+        Object[] args = joinPoint.getArgs();
+        CriteriaQuery cq = (CriteriaQuery) args[0];
+        Predicate existingPredicate = cq.getRestriction();
 
-            Predicate abacPredicate = CriteriaQueryUtils.from(abacContext, r, cb);
+        CriteriaBuilder cb = ((EntityManager) joinPoint.getTarget()).getCriteriaBuilder();
+        Root<?> r = (Root<?>) cq.getRoots().toArray()[0];
 
-            Predicate newWherePredicate = existingPredicate;
-            if (abacPredicate != null) {
-                newWherePredicate = cb.and(existingPredicate, abacPredicate);
-            }
+        Timer.Sample sample = metrics.start();
+        Predicate abacPredicate = criteria(abacContext, r, cb, bindings);
+        metrics.stop(sample, AbacMetrics.PREDICATE, r.getJavaType(), "criteria");
+        Assert.notNull(abacPredicate, "abac predicate cannot be null");
 
-            if (newWherePredicate != null) {
-                cq.where(newWherePredicate);
-            }
-        } catch (Throwable e) {
-            e.printStackTrace();
+        cq.where(existingPredicate != null ? cb.and(existingPredicate, abacPredicate) : abacPredicate);
+
+        TypedQuery<?> query = (TypedQuery<?>) joinPoint.proceed(joinPoint.getArgs());
+        for (Map.Entry<ParameterExpression<?>, Object> binding : bindings.entrySet()) {
+            query.setParameter((ParameterExpression) binding.getKey(), binding.getValue());
         }
+        return query;
     }
 
     @Around("execution(* org.springframework.data.repository.CrudRepository.save(..))")
@@ -200,46 +497,37 @@ public class QueryAugmentingABACAspect {
         Object entity = jp.getArgs()[0];
 
         if (ei.isNew(entity) == false) {
-            enforceAbacAttributes(entity, abacContext);
+            Timer.Sample sample = metrics.start();
+            try {
+                enforceAbacAttributes(entity, abacContext);
+            } catch (SecurityException se) {
+                metrics.denied(AbacMetrics.ENFORCE, ei.getJavaType(), "save");
+                throw se;
+            } finally {
+                metrics.stop(sample, AbacMetrics.ENFORCE, ei.getJavaType(), "save");
+            }
         }
-        return jp.proceed();
+        Object saved = jp.proceed();
+        EntityMemo.evict(ei.getJavaType(), ei.getId(saved));
+        return saved;
     }
 
+    // one conditional delete in the caller's transaction; like SimpleJpaRepository, deleting nothing is an error
     @Around("execution(* org.springframework.data.repository.CrudRepository.deleteById(..))")
     public void deleteById(ProceedingJoinPoint jp) throws Throwable {
 
         Disjunction abacContext = ABACContext.getCurrentAbacContext();
         if (abacContext == null) {
             jp.proceed(jp.getArgs());
+            return;
         }
 
         Object id = jp.getArgs()[0];
         Assert.notNull(id, ID_MUST_NOT_BE_NULL);
 
-        PathBuilder entityPath = new PathBuilder(EntityContext.getCurrentEntityContext().getJavaType(), "entity");
-
-        BooleanExpression idExpr = idExpr(id, entityPath);
-
-        BooleanExpression abacExpr = QueryDslUtils.from(abacContext, entityPath, EntityContext.getCurrentEntityContext().getJavaType());
-        if (abacExpr != null) {
-            idExpr = idExpr.and(abacExpr);
-        }
-
-        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
-        JPADeleteClause q = queryFactory.delete(entityPath);
-        if (idExpr != null) {
-            q = q.where(idExpr);
-        }
-
-        TransactionStatus status = ptm.getTransaction(TransactionDefinition.withDefaults());
-        try {
-            q.execute();
-
-            if (status != null && status.isCompleted() == false) {
-                ptm.commit(status);
-            }
-        } catch (Exception e) {
-            ptm.rollback(status);
+        Class<?> domainType = EntityContext.getCurrentEntityContext().getJavaType();
+        if (deletes.deleteById(domainType, id) == 0) {
+            throw new EmptyResultDataAccessException(format("No %s entity with id %s exists!", domainType, id), 1);
         }
     }
 
@@ -267,6 +555,11 @@ public class QueryAugmentingABACAspect {
 //        jp.proceed();
 //    }
 
+    private static Class<?> domainType() {
+        EntityInformation ei = EntityContext.getCurrentEntityContext();
+        return ei != null ? ei.getJavaType() : null;
+    }
+
     Class<?> typeFromConstant(String s) {
 
         Class<?> type = String.class;
@@ -303,6 +596,139 @@ public class QueryAugmentingABACAspect {
         return s;
     }
 
+    /**
+     * Renders the shape of the policy as a JPQL condition with parameters for its values, so that policies of the
+     * same shape produce the same query. Equality chains on a single column are collapsed into an in list, and
+     * empty and unconditional policies are rendered as conditions that never and always hold.
+     */
+    String jpql(Disjunction abacContext, String alias, JpqlParameters parameters) {
+        PolicyShape shape = PolicyShape.of(abacContext);
+        if (shape.isUnconditional()) {
+            return ALLOW_ALL_JPQL;
+        }
+        if (shape.isEmpty()) {
+            return DENY_ALL_JPQL;
+        }
+
+        List<String> terms = new ArrayList<>();
+        for (PolicyShape.Slot membership : shape.getMemberships()) {
+            terms.add(format("%s.%s in %s", alias, membership.getColumn(), parameters.next()));
+        }
+        for (List<PolicyShape.Slot> conjunction : shape.getConjunctions()) {
+            List<String> comparisons = new ArrayList<>();
+            for (PolicyShape.Slot slot : conjunction) {
+                comparisons.add(format("%s.%s %s %s", alias, slot.getColumn(), slot.getOperator(), parameters.next()));
+            }
+            terms.add(format("(%s)", String.join(" and ", comparisons)));
+        }
+        if (shape.getRemainder() != null) {
+            terms.add(format("(%s)", JPQLUtils.from(shape.getRemainder(), alias)));
+        }
+        return format("(%s)", String.join(" or ", terms));
+    }
+
+    /**
+     * @return the values of the slots of the policy, in the order of the parameters rendered by {@link #jpql}
+     */
+    List<Object> jpqlValues(PolicyShape shape, Class<?> domainType) {
+        List<Object> values = new ArrayList<>();
+        for (PolicyShape.Slot membership : shape.getMemberships()) {
+            List<Object> members = new ArrayList<>(membership.getPredicates().size());
+            for (BoolPredicate predicate : membership.getPredicates()) {
+                members.add(parameterValue(predicate, domainType));
+            }
+            values.add(members);
+        }
+        for (List<PolicyShape.Slot> conjunction : shape.getConjunctions()) {
+            for (PolicyShape.Slot slot : conjunction) {
+                values.add(parameterValue(slot.getPredicates().get(0), domainType));
+            }
+        }
+        return values;
+    }
+
+    private static Object parameterValue(BoolPredicate predicate, Class<?> domainType) {
+        if (domainType != null) {
+            try {
+                return BoolPredicates.typedValue(predicate, BoolPredicates.propertyType(domainType, BoolPredicates.column(predicate)));
+            } catch (PropertyReferenceException pre) {}
+        }
+        return BoolPredicates.constant(BoolPredicates.value(predicate));
+    }
+
+    /**
+     * Renders the policy as a criteria predicate with its values as parameters, collected in {@code bindings}.
+     * Equality chains on a single column are collapsed into an in list, and empty and unconditional policies are
+     * rendered as predicates that never and always hold.
+     */
+    Predicate criteria(Disjunction abacContext, Root<?> root, CriteriaBuilder cb, Map<ParameterExpression<?>, Object> bindings) {
+        PolicyShape shape = PolicyShape.of(abacContext);
+        if (shape.isUnconditional()) {
+            return cb.conjunction();
+        }
+        if (shape.isEmpty()) {
+            return cb.disjunction();
+        }
+
+        List<Predicate> terms = new ArrayList<>();
+        for (PolicyShape.Slot membership : shape.getMemberships()) {
+            Path<?> path = path(root, membership.getColumn());
+
+            List<Expression<?>> parameters = new ArrayList<>();
+            for (BoolPredicate predicate : membership.getPredicates()) {
+                parameters.add(parameter(predicate, path, cb, bindings));
+            }
+            terms.add(path.in(parameters.toArray(new Expression<?>[0])));
+        }
+        for (List<PolicyShape.Slot> conjunction : shape.getConjunctions()) {
+            List<Predicate> comparisons = new ArrayList<>();
+            for (PolicyShape.Slot slot : conjunction) {
+                Path<?> path = path(root, slot.getColumn());
+                comparisons.add(comparison(slot.getOperator(), path, parameter(slot.getPredicates().get(0), path, cb, bindings), cb));
+            }
+            terms.add(cb.and(comparisons.toArray(new Predicate[0])));
+        }
+        if (shape.getRemainder() != null) {
+            terms.add(CriteriaQueryUtils.from(shape.getRemainder(), root, cb));
+        }
+        return cb.or(terms.toArray(new Predicate[0]));
+    }
+
+    private static Path<?> path(Root<?> root, String column) {
+        Path<?> path = root;
+        for (String segment : column.split("\\.")) {
+            path = path.get(segment);
+        }
+        return path;
+    }
+
+    private static ParameterExpression<?> parameter(BoolPredicate predicate, Path<?> path, CriteriaBuilder cb, Map<ParameterExpression<?>, Object> bindings) {
+        Class<?> type = ClassUtils.resolvePrimitiveIfNecessary(path.getJavaType());
+        ParameterExpression<?> parameter = cb.parameter(type);
+        bindings.put(parameter, BoolPredicates.typedValue(predicate, type));
+        return parameter;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Predicate comparison(String operator, Expression path, Expression parameter, CriteriaBuilder cb) {
+        switch (operator) {
+            case "=":
+                return cb.equal(path, parameter);
+            case "<>":
+                return cb.notEqual(path, parameter);
+            case "<":
+                return cb.lessThan(path, parameter);
+            case "<=":
+                return cb.lessThanOrEqualTo(path, parameter);
+            case ">":
+                return cb.greaterThan(path, parameter);
+            case ">=":
+                return cb.greaterThanOrEqualTo(path, parameter);
+            default:
+                throw new IllegalArgumentException(format("Unsupported comparison: %s", operator));
+        }
+    }
+
     BooleanExpression idExpr(Object id, PathBuilder entityPath) {
         Field idField = BeanUtils.findFieldWithAnnotation(EntityContext.getCurrentEntityContext().getJavaType(), Id.class);
         PathBuilder idPath = entityPath.get(idField.getName(), id.getClass());
@@ -310,26 +736,97 @@ public class QueryAugmentingABACAspect {
     }
 
     void enforceAbacAttributes(Object entity, Disjunction abacContext) {
-        ConversionService converter = new DefaultConversionService();
-        BeanWrapper wrapper = new BeanWrapperImpl(entity);
+        AttributeChecks.enforce(entity, abacContext);
+    }
 
-        for (Conjunction conjunction : abacContext.getConjunctivePredicates()) {
+    /**
+     * Parameters a policy is rendered with, named {@code :abac0, :abac1, ...} or numbered from
+     * {@code firstOrdinal} when the query already uses positional parameters.
+     */
+    static final class JpqlParameters {
 
-            for (BoolPredicate predicate : conjunction.getPredicates()) {
+        static final String PREFIX = "abac";
 
-                try {
-                    String strProperty = predicate.getLeft().getColumn();
-                    Object value = wrapper.getPropertyValue(strProperty);
-                    if (!converter.convert(predicate.getRight().getValue(), wrapper.getPropertyType(strProperty)).equals(value)) {
-                        throw new SecurityException();
-                    }
-                } catch (NullValueInNestedPathException nvinpe) {
-                    throw new SecurityException();
-                } catch (InvalidPropertyException ipe) {}
+        private final int firstOrdinal;
+        private int count;
+
+        JpqlParameters(int firstOrdinal) {
+            this.firstOrdinal = firstOrdinal;
+        }
+
+        /**
+         * @return the placeholder of the next parameter
+         */
+        String next() {
+            int index = count++;
+            return firstOrdinal > 0 ? "?" + (firstOrdinal + index) : ":" + PREFIX + index;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        Query bind(Query query, List<Object> values) {
+            Assert.isTrue(values.size() == count, "policy values do not match the parameters of its shape");
+
+            for (int i = 0; i < count; i++) {
+                if (firstOrdinal > 0) {
+                    query.setParameter(firstOrdinal + i, values.get(i));
+                } else {
+                    query.setParameter(PREFIX + i, values.get(i));
+                }
+            }
+            return query;
+        }
+    }
+
+    @Getter
+    static final class Rewrite {
+
+        private final String query;
+        private final JpqlParameters parameters;
+
+        Rewrite(String query, JpqlParameters parameters) {
+            this.query = query;
+            this.parameters = parameters;
+        }
+    }
+
+    private static final class RewriteKey {
+
+        private final String shape;
+        private final String query;
+
+        RewriteKey(String shape, String query) {
+            this.shape = shape;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
             }
+            if (!(o instanceof RewriteKey)) {
+                return false;
+            }
+            RewriteKey other = (RewriteKey) o;
+            return shape.equals(other.shape) && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(shape, query);
         }
     }
 
+    /**
+     * Clause level view of a JPQL/HQL statement.
+     *
+     * The statement is lexed in a single pass that tracks parentheses and string literals, so keywords inside
+     * subqueries, function calls and quoted literals are not mistaken for clause boundaries. Clause text is kept
+     * verbatim apart from collapsing whitespace outside of literals.
+     */
     @Getter
     @Setter
     static class QueryAST {
@@ -338,106 +835,288 @@ public class QueryAugmentingABACAspect {
         private String attrs;
         private String type;
         private String alias;
+        private String joins;
+        private String set;
         private String where;
+        private String groupBy;
+        private String having;
         private String orderBy;
+        private int maxOrdinal;
 
         private QueryAST() {}
 
+        /**
+         * Adds the condition to the where clause; an existing condition is parenthesized so that the two are and'ed
+         * regardless of operator precedence.
+         */
+        void and(String condition) {
+            where = where == null ? condition : "(" + where + ") and (" + condition + ")";
+        }
+
         @Override
         public String toString() {
-            StringBuilder builder = new StringBuilder();
+            StringBuilder builder = new StringBuilder(64);
             builder.append(query);
-            builder.append(" ");
             if (attrs != null) {
-                builder.append(attrs);
-                builder.append(" ");
+                builder.append(' ').append(attrs);
             }
-            builder.append("from ");
-            builder.append(type);
-            builder.append(" ");
+            if (set == null) {
+                builder.append(" from");
+            }
+            builder.append(' ').append(type);
             if (alias != null) {
-                builder.append(alias);
-                builder.append(" ");
+                builder.append(' ').append(alias);
+            }
+            if (joins != null) {
+                builder.append(joins.charAt(0) == ',' ? "" : " ").append(joins);
+            }
+            if (set != null) {
+                builder.append(" set ").append(set);
+            }
+            if (where != null) {
+                builder.append(" where ").append(where);
             }
-            if (this.getWhere() != null) {
-                builder.append("where ");
-                builder.append(where);
-                builder.append(" ");
+            if (groupBy != null) {
+                builder.append(" group by ").append(groupBy);
             }
-            if (this.getOrderBy() != null) {
-                builder.append("order by ");
-                builder.append(orderBy);
+            if (having != null) {
+                builder.append(" having ").append(having);
             }
-            return builder.toString().trim();
+            if (orderBy != null) {
+                builder.append(" order by ").append(orderBy);
+            }
+            return builder.toString();
         }
 
         public static QueryAST fromQueryString(String query) {
 
             QueryAST ast = new QueryAST();
 
-            int token_type = QUERY;
-            String[] tokens = query.split(" |\\n");
-            for (int i=0; i < tokens.length; i++) {
-
-                String token = tokens[i];
-
-                switch (token_type) {
-                    case QUERY:
-                        ast.setQuery(token);
-                        token_type = ATTRS_OR_FROM;
-                        break;
-                    case ATTRS_OR_FROM:
-                        if (token.equals("from")) {
-                            token_type = TYPE;
-                        } else {
-                            ast.setAttrs(token);
-                        }
-                        break;
-                    case TYPE:
-                        ast.setType(token);
-                        token_type = ALIAS_OR_WHERE_OR_ORDERBY;
-                        break;
-                    case ALIAS_OR_WHERE_OR_ORDERBY:
-                        if (token.equals("where")) {
-                            token_type = WHERE;
-                        } else if (token.equals("order")) {
-                            token_type = ORDERBY;
-                        } else {
-                            ast.setAlias(token);
-                        }
-                        break;
-                    case WHERE:
-                        String where = "";
-                        do {
-                            where = where + tokens[i] + " ";
-                            i++;
-                        } while (i < tokens.length && !tokens[i].equals("order"));
-                        ast.setWhere(where.trim());
-                        token_type = ORDERBY;
-                        break;
-                    case ORDERBY:
-                        String orderby = "";
-
-                        while (tokens[i].equals("order") || tokens[i].equals("by")) {
-                            i++;  // skip
+            int start = skipWhitespace(query, 0);
+            int end = wordEnd(query, start);
+            ast.setQuery(query.substring(start, end));
+            boolean update = "update".equalsIgnoreCase(ast.getQuery());
+
+            // start and end offsets of each clause's text
+            int[] bounds = new int[CLAUSES * 2];
+            Arrays.fill(bounds, -1);
+
+            int clause = STATEMENT;
+            bounds[STATEMENT * 2] = end;
+
+            int depth = 0;
+            int i = end;
+            while (i < query.length()) {
+                char c = query.charAt(i);
+
+                if (c == '\'') {
+                    i = literalEnd(query, i);
+                    continue;
+                }
+                if (c == '?') {
+                    int ordinalEnd = i + 1;
+                    while (ordinalEnd < query.length() && Character.isDigit(query.charAt(ordinalEnd))) {
+                        ordinalEnd++;
+                    }
+                    if (ordinalEnd > i + 1) {
+                        ast.maxOrdinal = Math.max(ast.maxOrdinal, Integer.parseInt(query.substring(i + 1, ordinalEnd)));
+                    }
+                    i = ordinalEnd;
+                    continue;
+                }
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (depth == 0 && Character.isLetter(c) && !isIdentifierPart(query.charAt(i - 1))) {
+                    int wordEnd = wordEnd(query, i);
+                    int next = clauseKeyword(query, i, wordEnd, update);
+                    if (next != -1) {
+                        bounds[clause * 2 + 1] = i;
+                        if (next == GROUP_BY || next == ORDER_BY) {
+                            wordEnd = wordEnd(query, skipWhitespace(query, wordEnd));
                         }
-                        do {
-                            orderby = orderby + tokens[i] + " ";
-                            i++;
-                        } while (i < tokens.length);
-                        ast.setOrderBy(orderby.trim());
-                        break;
+                        clause = next;
+                        bounds[clause * 2] = wordEnd;
+                    }
+                    i = wordEnd;
+                    continue;
                 }
+                i++;
             }
+            bounds[clause * 2 + 1] = query.length();
+
+            String statement = clauseText(query, bounds, STATEMENT);
+            if (update) {
+                ast.setSet(clauseText(query, bounds, SET));
+                ast.parseEntity(statement);
+            } else {
+                ast.setAttrs(statement);
+                ast.parseEntity(clauseText(query, bounds, FROM));
+            }
+            ast.setWhere(clauseText(query, bounds, WHERE));
+            ast.setGroupBy(clauseText(query, bounds, GROUP_BY));
+            ast.setHaving(clauseText(query, bounds, HAVING));
+            ast.setOrderBy(clauseText(query, bounds, ORDER_BY));
 
             return ast;
         }
 
-        static final int QUERY = 0;
-        static final int ATTRS_OR_FROM = 1;
-        static final int TYPE = 2;
-        static final int ALIAS_OR_WHERE_OR_ORDERBY = 3;
-        static final int WHERE = 4;
-        static final int ORDERBY = 5;
+        // <type> [as] [<alias>] [<joins>]
+        private void parseEntity(String from) {
+
+            if (from == null) {
+                return;
+            }
+
+            int typeEnd = tokenEnd(from, 0);
+            type = from.substring(0, typeEnd);
+
+            int next = skipWhitespace(from, typeEnd);
+            int nextEnd = tokenEnd(from, next);
+            if (nextEnd - next == 2 && from.regionMatches(true, next, "as", 0, 2)) {
+                next = skipWhitespace(from, nextEnd);
+                nextEnd = tokenEnd(from, next);
+            }
+            if (nextEnd > next && !isJoinKeyword(from, next, nextEnd)) {
+                alias = from.substring(next, nextEnd);
+                next = skipWhitespace(from, nextEnd);
+            }
+
+            if (next < from.length()) {
+                joins = from.substring(next);
+            }
+        }
+
+        private static int clauseKeyword(String query, int start, int end, boolean update) {
+            int length = end - start;
+            if (matches(query, start, length, "from")) {
+                return FROM;
+            } else if (update && matches(query, start, length, "set")) {
+                return SET;
+            } else if (matches(query, start, length, "where")) {
+                return WHERE;
+            } else if (matches(query, start, length, "having")) {
+                return HAVING;
+            } else if (matches(query, start, length, "group") && followedByBy(query, end)) {
+                return GROUP_BY;
+            } else if (matches(query, start, length, "order") && followedByBy(query, end)) {
+                return ORDER_BY;
+            }
+            return -1;
+        }
+
+        private static boolean followedByBy(String query, int end) {
+            int by = skipWhitespace(query, end);
+            return by > end && wordEnd(query, by) - by == 2 && query.regionMatches(true, by, "by", 0, 2);
+        }
+
+        private static boolean isJoinKeyword(String from, int start, int end) {
+            int length = end - start;
+            return matches(from, start, length, "join")
+                    || matches(from, start, length, "left")
+                    || matches(from, start, length, "right")
+                    || matches(from, start, length, "inner")
+                    || matches(from, start, length, "outer")
+                    || matches(from, start, length, "cross")
+                    || matches(from, start, length, "fetch")
+                    || from.charAt(start) == ',';
+        }
+
+        private static boolean matches(String s, int start, int length, String keyword) {
+            return length == keyword.length() && s.regionMatches(true, start, keyword, 0, length);
+        }
+
+        private static boolean isIdentifierPart(char c) {
+            return Character.isJavaIdentifierPart(c) || c == '.' || c == ':' || c == '?';
+        }
+
+        private static int wordEnd(String s, int i) {
+            while (i < s.length() && Character.isJavaIdentifierPart(s.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        // an identifier, path or parameter up to whitespace or a comma
+        private static int tokenEnd(String s, int i) {
+            if (i < s.length() && s.charAt(i) == ',') {
+                return i + 1;
+            }
+            while (i < s.length() && !Character.isWhitespace(s.charAt(i)) && s.charAt(i) != ',') {
+                i++;
+            }
+            return i;
+        }
+
+        private static int skipWhitespace(String s, int i) {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        // literals escape quotes by doubling them
+        private static int literalEnd(String s, int i) {
+            i++;
+            while (i < s.length()) {
+                if (s.charAt(i) == '\'') {
+                    if (i + 1 < s.length() && s.charAt(i + 1) == '\'') {
+                        i += 2;
+                        continue;
+                    }
+                    return i + 1;
+                }
+                i++;
+            }
+            return i;
+        }
+
+        // the clause's text with whitespace outside of literals collapsed, or null if absent or empty
+        private static String clauseText(String query, int[] bounds, int clause) {
+
+            int start = bounds[clause * 2];
+            int end = bounds[clause * 2 + 1];
+            if (start == -1) {
+                return null;
+            }
+
+            StringBuilder text = new StringBuilder(end - start);
+            boolean space = false;
+            int i = skipWhitespace(query, start);
+            while (i < end) {
+                char c = query.charAt(i);
+                if (c == '\'') {
+                    int literalEnd = Math.min(literalEnd(query, i), end);
+                    if (space) {
+                        text.append(' ');
+                        space = false;
+                    }
+                    text.append(query, i, literalEnd);
+                    i = literalEnd;
+                    continue;
+                }
+                if (Character.isWhitespace(c)) {
+                    space = text.length() > 0;
+                } else {
+                    if (space) {
+                        text.append(' ');
+                        space = false;
+                    }
+                    text.append(c);
+                }
+                i++;
+            }
+            return text.length() == 0 ? null : text.toString();
+        }
+
+        static final int STATEMENT = 0;
+        static final int FROM = 1;
+        static final int SET = 2;
+        static final int WHERE = 3;
+        static final int GROUP_BY = 4;
+        static final int HAVING = 5;
+        static final int ORDER_BY = 6;
+        static final int CLAUSES = 7;
     }
 }
@@ -0,0 +1,110 @@
+package com.example.abac_spike;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.junit.runner.RunWith;
+import org.springframework.data.repository.core.EntityInformation;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.example.abac_commons.ABACContext;
+import com.example.abac_commons.ABACContextDecoder;
+import com.example.abac_commons.ABACRouteTable;
+import com.example.abac_commons.PolicyHandleRegistry;
+import com.example.abac_commons.PolicyInputResolver;
+import com.example.abac_commons.ResidualPolicyCache;
+import com.example.abac_commons.ResidualPolicyCompiler;
+import com.example.abac_spike.AbacConfiguration.ABACRequestFilter;
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.expressions.Disjunction;
+
+@RunWith(Ginkgo4jRunner.class)
+public class ABACRequestFilterTest {
+
+    private ABACContextDecoder decoder;
+    private PolicyInputResolver inputResolver;
+    private Disjunction serverPolicy;
+    private ABACRequestFilter filter;
+
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private FilterChain chain;
+    private Disjunction seen;
+
+    {
+        Describe("ABACRequestFilter", () -> {
+
+            Context("given server-side residual policies", () -> {
+
+                BeforeEach(() -> {
+                    ABACRouteTable routes = mock(ABACRouteTable.class);
+                    when(routes.lookup(anyString())).thenReturn(mock(EntityInformation.class));
+
+                    decoder = mock(ABACContextDecoder.class);
+                    inputResolver = mock(PolicyInputResolver.class);
+                    serverPolicy = new Disjunction(new ArrayList<>());
+                    ResidualPolicyCompiler compiler = input -> serverPolicy;
+
+                    filter = new ABACRequestFilter(routes, decoder, new PolicyHandleRegistry(), new ResidualPolicyCache(compiler), inputResolver);
+
+                    request = new MockHttpServletRequest("GET", "/accountStates");
+                    response = new MockHttpServletResponse();
+                    chain = mock(FilterChain.class);
+                    seen = null;
+                    doAnswer(invocation -> {
+                        seen = ABACContext.getCurrentAbacContext();
+                        return null;
+                    }).when(chain).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+                });
+
+                Context("when the request has a principal", () -> {
+
+                    It("should apply the server's policy and ignore the client's X-ABAC-Context", () -> {
+                        when(inputResolver.resolve(any())).thenReturn(Collections.singletonMap("brokerId", "1"));
+                        request.addHeader(ABACRequestFilter.ABAC_CONTEXT_HEADER, "client-policy");
+
+                        filter.doFilter(request, response, chain);
+
+                        assertThat(seen, is(sameInstance(serverPolicy)));
+                        verify(decoder, never()).decode(anyString());
+                    });
+                });
+
+                Context("when the request has no principal", () -> {
+
+                    It("should answer 401 without proceeding", () -> {
+                        request.addHeader(ABACRequestFilter.ABAC_CONTEXT_HEADER, "client-policy");
+
+                        filter.doFilter(request, response, chain);
+
+                        assertThat(response.getStatus(), is(401));
+                        assertThat(seen, is(nullValue()));
+                        verify(chain, never()).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+                    });
+                });
+            });
+        });
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.abac_spike;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.beans.PropertyDescriptor;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+@RunWith(Ginkgo4jRunner.class)
+public class AbacExportControllerTest {
+
+    {
+        Describe("AbacExportController", () -> {
+
+            Context("#csvField", () -> {
+
+                It("should leave plain values as they are", () -> {
+                    assertThat(AbacExportController.csvField("statement"), is("statement"));
+                    assertThat(AbacExportController.csvField(42L), is("42"));
+                });
+
+                It("should write nulls as empty fields", () -> {
+                    assertThat(AbacExportController.csvField(null), is(""));
+                });
+
+                It("should quote separators, quotes and line breaks", () -> {
+                    assertThat(AbacExportController.csvField("a,b"), is("\"a,b\""));
+                    assertThat(AbacExportController.csvField("say \"hi\""), is("\"say \"\"hi\"\"\""));
+                    assertThat(AbacExportController.csvField("a\nb"), is("\"a\nb\""));
+                });
+            });
+
+            Context("#columns", () -> {
+
+                It("should only export simple properties", () -> {
+                    List<PropertyDescriptor> columns = AbacExportController.columns(Row.class);
+
+                    assertThat(columns.stream().map(PropertyDescriptor::getName).collect(Collectors.toList()), contains("id", "name"));
+                });
+            });
+        });
+    }
+
+    public static class Row {
+
+        public Long getId() {
+            return 1L;
+        }
+
+        public String getName() {
+            return "name";
+        }
+
+        public Row getParent() {
+            return null;
+        }
+    }
+}
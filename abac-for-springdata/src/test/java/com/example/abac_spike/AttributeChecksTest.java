@@ -0,0 +1,91 @@
+package com.example.abac_spike;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Collections;
+
+import org.junit.runner.RunWith;
+
+import com.example.abac_commons.PropertyAccessor;
+import com.example.abac_commons.RegoPartialEvaluator;
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+import be.heydari.lib.expressions.Disjunction;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@RunWith(Ginkgo4jRunner.class)
+public class AttributeChecksTest {
+
+    private Disjunction policy;
+
+    {
+        Describe("AttributeChecks", () -> {
+
+            BeforeEach(() -> {
+                policy = policy("data.accountState.broker.id == \"1L\"", "data.accountState.type == \"statement\"", "data.accountState.unknown == \"x\"");
+            });
+
+            Context("#enforce", () -> {
+
+                It("should accept entities satisfying every predicate", () -> {
+                    AttributeChecks.enforce(new Document("statement", new Owner(1L)), policy);
+                });
+
+                It("should reject entities with a different value", () -> {
+                    assertThrows(SecurityException.class, () -> AttributeChecks.enforce(new Document("invoice", new Owner(1L)), policy));
+                    assertThrows(SecurityException.class, () -> AttributeChecks.enforce(new Document("statement", new Owner(2L)), policy));
+                });
+
+                It("should reject entities with a null along a property path", () -> {
+                    assertThrows(SecurityException.class, () -> AttributeChecks.enforce(new Document("statement", null), policy));
+                });
+            });
+
+            Context("#checks", () -> {
+
+                It("should prepare the checks once per policy and entity class, ignoring unknown properties", () -> {
+                    AttributeChecks.Check[] checks = AttributeChecks.checks(policy, Document.class);
+
+                    assertThat(checks.length, is(2));
+                    assertThat(AttributeChecks.checks(policy, Document.class), is(sameInstance(checks)));
+                });
+
+                It("should resolve property paths to the type of their last property", () -> {
+                    assertThat(PropertyAccessor.of(Document.class, "broker.id").getType(), is(Long.class));
+                    assertThat(PropertyAccessor.of(Document.class, "broker.name"), is(nullValue()));
+                });
+            });
+        });
+    }
+
+    private static Disjunction policy(String... predicates) {
+        StringBuilder rego = new StringBuilder("package checks\nallow {\n");
+        for (String predicate : predicates) {
+            rego.append("  ").append(predicate).append("\n");
+        }
+        rego.append("}\n");
+        return new RegoPartialEvaluator(rego.toString()).compile("data.checks.allow", Collections.emptyMap(), Collections.singletonList("data.accountState"));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Document {
+        private String type;
+        private Owner broker;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Owner {
+        private Long id;
+    }
+}
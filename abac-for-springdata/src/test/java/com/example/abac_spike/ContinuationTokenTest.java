@@ -0,0 +1,54 @@
+package com.example.abac_spike;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.runner.RunWith;
+
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+
+@RunWith(Ginkgo4jRunner.class)
+public class ContinuationTokenTest {
+
+    {
+        Describe("ContinuationToken", () -> {
+
+            It("should round trip the sort key values", () -> {
+                String token = ContinuationToken.encode(Arrays.asList("statement.docx", "", "42"));
+
+                assertThat(ContinuationToken.decode(token, 3), is(Arrays.asList("statement.docx", "", "42")));
+            });
+
+            It("should be opaque and url safe", () -> {
+                String token = ContinuationToken.encode(Arrays.asList("a/b+c?d", "1"));
+
+                assertThat(token, not(containsString("/")));
+                assertThat(token, not(containsString("+")));
+                assertThat(token, not(containsString("?")));
+            });
+
+            It("should reject tokens for a different sort", () -> {
+                String token = ContinuationToken.encode(Arrays.asList("x", "1"));
+
+                assertThrows(IllegalArgumentException.class, () -> ContinuationToken.decode(token, 3));
+            });
+
+            It("should reject malformed tokens", () -> {
+                assertThrows(IllegalArgumentException.class, () -> ContinuationToken.decode("not*base64", 1));
+            });
+
+            It("should round trip null sort key values", () -> {
+                String token = ContinuationToken.encode(Arrays.asList(null, "", "1"));
+
+                assertThat(ContinuationToken.decode(token, 3), is(Arrays.asList(null, "", "1")));
+            });
+        });
+    }
+}
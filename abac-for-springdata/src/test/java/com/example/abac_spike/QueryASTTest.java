@@ -1,5 +1,6 @@
 package com.example.abac_spike;
 
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
 import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
 import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
 import static org.hamcrest.CoreMatchers.is;
@@ -81,6 +82,74 @@ public class QueryASTTest {
 
                 assertThat(ast.toString(), is("select entity from AccountState entity where entity.id = ?1"));
             });
+
+            It("should not split on keywords in subqueries", () -> {
+                QueryAugmentingABACAspect.QueryAST ast = QueryAST.fromQueryString("select e from AccountState e where e.broker.id in (select b.id from Broker b where b.name = :name) order by e.id");
+
+                assertThat(ast.getType(), is("AccountState"));
+                assertThat(ast.getAlias(), is("e"));
+                assertThat(ast.getWhere(), is("e.broker.id in (select b.id from Broker b where b.name = :name)"));
+                assertThat(ast.getOrderBy(), is("e.id"));
+            });
+
+            It("should not split on keywords in quoted literals", () -> {
+                QueryAugmentingABACAspect.QueryAST ast = QueryAST.fromQueryString("select e from AccountState e where e.name = 'it''s  from where   order by'");
+
+                assertThat(ast.getWhere(), is("e.name = 'it''s  from where   order by'"));
+                assertThat(ast.getOrderBy(), is(nullValue()));
+            });
+
+            It("should parse joins, group by and having", () -> {
+                QueryAugmentingABACAspect.QueryAST ast = QueryAST.fromQueryString("select e.type, count(e) from AccountState as e left join e.broker b where b.id = :id group  by e.type having count(e) > 1");
+
+                assertThat(ast.getAttrs(), is("e.type, count(e)"));
+                assertThat(ast.getType(), is("AccountState"));
+                assertThat(ast.getAlias(), is("e"));
+                assertThat(ast.getJoins(), is("left join e.broker b"));
+                assertThat(ast.getWhere(), is("b.id = :id"));
+                assertThat(ast.getGroupBy(), is("e.type"));
+                assertThat(ast.getHaving(), is("count(e) > 1"));
+
+                assertThat(ast.toString(), is("select e.type, count(e) from AccountState e left join e.broker b where b.id = :id group by e.type having count(e) > 1"));
+            });
+
+            It("should parse an update", () -> {
+                QueryAugmentingABACAspect.QueryAST ast = QueryAST.fromQueryString("update AccountState e set e.name = :name where e.id = :id");
+
+                assertThat(ast.getQuery(), is("update"));
+                assertThat(ast.getType(), is("AccountState"));
+                assertThat(ast.getAlias(), is("e"));
+                assertThat(ast.getSet(), is("e.name = :name"));
+                assertThat(ast.getWhere(), is("e.id = :id"));
+
+                assertThat(ast.toString(), is("update AccountState e set e.name = :name where e.id = :id"));
+            });
+
+            It("should parse a delete without an alias", () -> {
+                QueryAugmentingABACAspect.QueryAST ast = QueryAST.fromQueryString("delete from AccountState");
+
+                assertThat(ast.getQuery(), is("delete"));
+                assertThat(ast.getAttrs(), is(nullValue()));
+                assertThat(ast.getType(), is("AccountState"));
+                assertThat(ast.getAlias(), is(nullValue()));
+            });
+
+            Context("#and", () -> {
+
+                It("should set the where clause of a query without one", () -> {
+                    QueryAugmentingABACAspect.QueryAST ast = QueryAST.fromQueryString("select e from AccountState e order by e.id");
+                    ast.and("e.type = 'a'");
+
+                    assertThat(ast.toString(), is("select e from AccountState e where e.type = 'a' order by e.id"));
+                });
+
+                It("should and the condition with an existing where clause exactly once", () -> {
+                    QueryAugmentingABACAspect.QueryAST ast = QueryAST.fromQueryString("select e from AccountState e where e.type = 'a' or e.type = 'b'");
+                    ast.and("e.broker.id = '1'");
+
+                    assertThat(ast.getWhere(), is("(e.type = 'a' or e.type = 'b') and (e.broker.id = '1')"));
+                });
+            });
         });
     }
 }
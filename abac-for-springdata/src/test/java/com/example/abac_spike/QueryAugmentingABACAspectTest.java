@@ -0,0 +1,237 @@
+package com.example.abac_spike;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.AfterEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.BeforeEach;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Context;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.runner.RunWith;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.abac_commons.ABACContext;
+import com.example.abac_commons.BoolPredicates;
+import com.example.abac_commons.PolicyShape;
+import com.example.abac_commons.RegoPartialEvaluator;
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
+import com.querydsl.core.types.dsl.PathBuilder;
+
+import be.heydari.lib.expressions.Disjunction;
+
+@RunWith(Ginkgo4jRunner.class)
+public class QueryAugmentingABACAspectTest {
+
+    private QueryAugmentingABACAspect aspect;
+    private Disjunction policy;
+    private QueryAugmentingABACAspect.Rewrite rewrite;
+
+    {
+        Describe("QueryAugmentingABACAspect", () -> {
+
+            BeforeEach(() -> {
+                aspect = new QueryAugmentingABACAspect(null, null);
+            });
+
+            Context("#rewrite", () -> {
+
+                Context("given a query without parameters", () -> {
+
+                    BeforeEach(() -> {
+                        policy = policy("1L", "2L", "3L");
+                        rewrite = aspect.rewrite("select e from AccountState e where e.type = 'a'", policy);
+                    });
+
+                    It("should render the policy values as named parameters", () -> {
+                        assertThat(rewrite.getQuery(), is("select e from AccountState e where (e.type = 'a') and ((e.broker.id in :abac0))"));
+                        assertThat(rewrite.getParameters().getCount(), is(1));
+
+                        List<Object> values = aspect.jpqlValues(PolicyShape.of(policy), null);
+                        assertThat(values.size(), is(1));
+                        assertThat((Collection<Long>) values.get(0), containsInAnyOrder(1L, 2L, 3L));
+                    });
+
+                    It("should produce the same query for policies of the same shape", () -> {
+                        QueryAugmentingABACAspect.Rewrite other = aspect.rewrite("select e from AccountState e where e.type = 'a'", policy("4L", "5L", "6L"));
+
+                        assertThat(other.getQuery(), is(rewrite.getQuery()));
+                        assertThat(other.getQuery(), not(containsString("4")));
+                    });
+                });
+
+                Context("given a query with positional parameters", () -> {
+
+                    BeforeEach(() -> {
+                        rewrite = aspect.rewrite("select e from AccountState e where e.id = ?1", policy("1L", "2L"));
+                    });
+
+                    It("should number the policy parameters after the query's", () -> {
+                        assertThat(rewrite.getQuery(), is("select e from AccountState e where (e.id = ?1) and ((e.broker.id in ?2))"));
+                    });
+                });
+            });
+
+            Context("given a policy without conjunctions", () -> {
+
+                BeforeEach(() -> {
+                    policy = new Disjunction(new ArrayList<>());
+                });
+
+                It("should rewrite queries to select nothing", () -> {
+                    rewrite = aspect.rewrite("select e from AccountState e where e.type = ?1", policy);
+
+                    assertThat(rewrite.getQuery(), is("select e from AccountState e where (e.type = ?1) and (1 = 0)"));
+                    assertThat(rewrite.getParameters().getCount(), is(0));
+                });
+
+                It("should render a criteria predicate that never holds", () -> {
+                    CriteriaBuilder cb = mock(CriteriaBuilder.class);
+                    Predicate disjunction = mock(Predicate.class);
+                    when(cb.disjunction()).thenReturn(disjunction);
+                    Map<ParameterExpression<?>, Object> bindings = new HashMap<>();
+
+                    assertThat(aspect.criteria(policy, mock(Root.class), cb, bindings), is(sameInstance(disjunction)));
+                    assertThat(bindings.isEmpty(), is(true));
+                });
+            });
+
+            Context("given a policy with an empty conjunction", () -> {
+
+                BeforeEach(() -> {
+                    policy = BoolPredicates.disjunction(Collections.singletonList(BoolPredicates.conjunction(Collections.emptyList())));
+                });
+
+                It("should rewrite queries with a condition that always holds", () -> {
+                    rewrite = aspect.rewrite("select e from AccountState e where e.type = ?1", policy);
+
+                    assertThat(rewrite.getQuery(), is("select e from AccountState e where (e.type = ?1) and (1 = 1)"));
+                    assertThat(rewrite.getParameters().getCount(), is(0));
+                });
+
+                It("should render a criteria predicate that always holds", () -> {
+                    CriteriaBuilder cb = mock(CriteriaBuilder.class);
+                    Predicate conjunction = mock(Predicate.class);
+                    when(cb.conjunction()).thenReturn(conjunction);
+                    Map<ParameterExpression<?>, Object> bindings = new HashMap<>();
+
+                    assertThat(aspect.criteria(policy, mock(Root.class), cb, bindings), is(sameInstance(conjunction)));
+                    assertThat(bindings.isEmpty(), is(true));
+                });
+            });
+
+            Context("#createQueryFromCriteriaQuery", () -> {
+
+                AfterEach(() -> {
+                    ABACContext.clear();
+                });
+
+                It("should fail rather than run the query unrestricted when the policy cannot be applied", () -> {
+                    ABACContext.setCurrentAbacContext(new Disjunction(new ArrayList<>()));
+
+                    CriteriaBuilder cb = mock(CriteriaBuilder.class);
+                    when(cb.disjunction()).thenThrow(new IllegalStateException("unsupported"));
+                    EntityManager em = mock(EntityManager.class);
+                    when(em.getCriteriaBuilder()).thenReturn(cb);
+                    CriteriaQuery<?> cq = mock(CriteriaQuery.class);
+                    when(cq.getRoots()).thenReturn(Collections.<Root<?>>singleton(mock(Root.class)));
+
+                    ProceedingJoinPoint jp = mock(ProceedingJoinPoint.class);
+                    when(jp.getArgs()).thenReturn(new Object[] {cq});
+                    when(jp.getTarget()).thenReturn(em);
+
+                    assertThrows(IllegalStateException.class, () -> aspect.createQueryFromCriteriaQuery(jp));
+                    verify(jp, never()).proceed(any(Object[].class));
+                });
+            });
+
+            Context("#seek", () -> {
+
+                It("should reject unknown sort properties as a bad request", () -> {
+                    ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> seek(Sort.by("nope"), null));
+                    assertThat(e.getStatus(), is(HttpStatus.BAD_REQUEST));
+                });
+
+                It("should reject tokens that do not decode as a bad request", () -> {
+                    ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> seek(Sort.by("name"), "not*base64"));
+                    assertThat(e.getStatus(), is(HttpStatus.BAD_REQUEST));
+                });
+
+                It("should reject tokens for a different sort as a bad request", () -> {
+                    String token = ContinuationToken.encode(Collections.singletonList("x"));
+
+                    ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> seek(Sort.by("name"), token));
+                    assertThat(e.getStatus(), is(HttpStatus.BAD_REQUEST));
+                });
+
+                It("should reject tokens whose values do not convert to the sort key types as a bad request", () -> {
+                    String token = ContinuationToken.encode(Arrays.asList("x", "not-a-number"));
+
+                    ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> seek(Sort.by("name"), token));
+                    assertThat(e.getStatus(), is(HttpStatus.BAD_REQUEST));
+                });
+            });
+
+            Context("#deleteById", () -> {
+
+                It("should only proceed when there is no ABAC context", () -> {
+                    ProceedingJoinPoint jp = mock(ProceedingJoinPoint.class);
+                    when(jp.getArgs()).thenReturn(new Object[] {1L});
+
+                    aspect.deleteById(jp);
+
+                    verify(jp).proceed(any(Object[].class));
+                });
+            });
+        });
+    }
+
+    private Page<?> seek(Sort sort, String continuation) {
+        return aspect.seek(new PathBuilder<>(Row.class, "row"), Row.class, null, PageRequest.of(0, 10, sort), new KeysetContext(continuation, token -> {}));
+    }
+
+    public static class Row {
+        @Id
+        private Long id;
+        private String name;
+    }
+
+    private static Disjunction policy(String... brokerIds) {
+        StringBuilder rego = new StringBuilder("package rewrite\n");
+        for (String brokerId : brokerIds) {
+            rego.append("allow {\n  data.accountState.broker.id == \"").append(brokerId).append("\"\n}\n");
+        }
+        return new RegoPartialEvaluator(rego.toString()).compile("data.rewrite.allow", Collections.emptyMap(), Collections.singletonList("data.accountState"));
+    }
+}
@@ -0,0 +1,8 @@
+package abac_spike
+
+default allow_partial = false
+
+allow_partial {
+  input.action == "GET"
+  data.accountState.broker.id == input.brokerId
+}
\ No newline at end of file
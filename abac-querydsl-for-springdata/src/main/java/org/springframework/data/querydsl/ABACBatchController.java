@@ -0,0 +1,113 @@
+package org.springframework.data.querydsl;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Id;
+
+import org.springframework.content.commons.utils.BeanUtils;
+import org.springframework.data.repository.core.EntityInformation;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.example.abac_commons.ABACContext;
+import com.example.abac_commons.ABACRouteTable;
+import com.example.abac_commons.AbacMetrics;
+import com.example.abac_commons.BatchIds;
+import com.example.abac_commons.CompiledPolicyCache;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import io.micrometer.core.instrument.Timer;
+
+import be.heydari.lib.expressions.Disjunction;
+
+/**
+ * Looks up many entities of a protected repository at once, with a single {@code id in (...) and <policy>} query.
+ *
+ * Requested ids that are not returned are listed as unavailable, whether they do not exist or are denied by the
+ * policy, so a response does not reveal which.
+ */
+@ResponseBody
+@RequestMapping
+public class ABACBatchController {
+
+    public static final String PATH = ABACRouteTable.BATCH_PATH;
+
+    public static final int MAX_IDS = ABACRouteTable.MAX_BATCH_IDS;
+
+    private final ABACRouteTable routes;
+    private final EntityManager em;
+    private final CompiledPolicyCache policyCache;
+    private final AbacMetrics metrics;
+
+    public ABACBatchController(ABACRouteTable routes, EntityManager em, CompiledPolicyCache policyCache, AbacMetrics metrics) {
+        this.routes = routes;
+        this.em = em;
+        this.policyCache = policyCache;
+        this.metrics = metrics;
+    }
+
+    @GetMapping(PATH)
+    public ResponseEntity<Map<String, Object>> findAllById(@PathVariable String repository, @RequestParam("ids") List<String> ids) {
+
+        EntityInformation ei = routes.lookup(repository);
+        if (ei == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Set<String> requested = new LinkedHashSet<>(ids);
+        if (requested.size() > MAX_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Class<?> domainType = ei.getJavaType();
+        BatchIds batchIds;
+        try {
+            batchIds = BatchIds.of(requested, ei.getIdType());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<?> found = batchIds.isEmpty() ? new ArrayList<>() : find(domainType, batchIds.typed());
+        return ResponseEntity.ok(batchIds.result(found, ei));
+    }
+
+    private List<?> find(Class<?> domainType, List<Object> ids) {
+        PathBuilder entityPath = new PathBuilder(domainType, toAlias(domainType));
+
+        Field idField = BeanUtils.findFieldWithAnnotation(domainType, Id.class);
+        BooleanExpression expr = entityPath.get(idField.getName()).in(ids);
+
+        Disjunction abacContext = ABACContext.getCurrentAbacContext();
+        if (abacContext != null) {
+            Timer.Sample sample = metrics.start();
+            expr = expr.and(policyCache.get(abacContext, domainType, toAlias(domainType)));
+            metrics.stop(sample, AbacMetrics.PREDICATE, domainType, "findAllById");
+        }
+
+        Timer.Sample sample = metrics.start();
+        try {
+            return new JPAQueryFactory(em).selectFrom(entityPath).where(expr).fetch();
+        } finally {
+            metrics.stop(sample, AbacMetrics.QUERY, domainType, "findAllById");
+        }
+    }
+
+    private String toAlias(Class<?> subjectType) {
+
+        char c[] = subjectType.getSimpleName().toCharArray();
+        c[0] = Character.toLowerCase(c[0]);
+        return new String(c);
+    }
+}
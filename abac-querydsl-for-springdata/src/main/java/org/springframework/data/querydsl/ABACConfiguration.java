@@ -3,7 +3,9 @@ package org.springframework.data.querydsl;
 import static java.lang.String.format;
 
 import java.io.IOException;
-import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 
 import javax.persistence.EntityManager;
 import javax.servlet.Filter;
@@ -12,17 +14,23 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.content.rest.config.RestConfiguration;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
 import org.springframework.core.convert.ConversionService;
-import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.querydsl.binding.QuerydslBindingsFactory;
 import org.springframework.data.querydsl.binding.XenitQuerydslAwareRootResourceInformationHandlerMethodArgumentResolver;
 import org.springframework.data.querydsl.binding.XenitQuerydslPredicateBuilder;
@@ -30,15 +38,42 @@ import org.springframework.data.repository.core.EntityInformation;
 import org.springframework.data.repository.core.RepositoryInformation;
 import org.springframework.data.repository.support.Repositories;
 import org.springframework.data.repository.support.RepositoryInvokerFactory;
+import org.springframework.data.rest.core.config.RepositoryRestConfiguration;
 import org.springframework.data.rest.webmvc.config.ResourceMetadataHandlerMethodArgumentResolver;
 import org.springframework.data.rest.webmvc.config.RootResourceInformationHandlerMethodArgumentResolver;
+import org.springframework.http.MediaType;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 import org.springframework.web.util.UrlPathHelper;
 
-import be.heydari.lib.converters.protobuf.ProtobufUtils;
-import be.heydari.lib.converters.protobuf.generated.PDisjunction;
+import com.example.abac_commons.ABACContext;
+import com.example.abac_commons.ABACContextDecoder;
+import com.example.abac_commons.ABACContextTaskDecorator;
+import com.example.abac_commons.ABACRouteTable;
+import com.example.abac_commons.AbacDeleteController;
+import com.example.abac_commons.AbacDeletes;
+import com.example.abac_commons.AbacMetrics;
+import com.example.abac_commons.AbacUpdateController;
+import com.example.abac_commons.AbacUpdates;
+import com.example.abac_commons.CompiledPolicyCache;
+import com.example.abac_commons.EntityContext;
+import com.example.abac_commons.EntityManagerContext;
+import com.example.abac_commons.EntityMemo;
+import com.example.abac_commons.PolicyHandleRegistry;
+import com.example.abac_commons.PolicyInputResolver;
+import com.example.abac_commons.PrincipalPolicyInputResolver;
+import com.example.abac_commons.ResidualPolicyCache;
+import com.example.abac_commons.ResidualPolicyCompiler;
+import com.example.abac_commons.SliceContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
 import be.heydari.lib.expressions.Disjunction;
-import internal.org.springframework.content.rest.utils.RepositoryUtils;
 
 @Configuration
 public class ABACConfiguration {
@@ -46,25 +81,128 @@ public class ABACConfiguration {
     private static final String QUERYDSL_REPO_REQUEST_ARGUMENT_RESOLVER = "querydslRepoRequestArgumentResolver";
     private static final String REPO_REQUEST_ARGUMENT_RESOLVER = "repoRequestArgumentResolver";
 
+    public static final String ABAC_COUNT_EXECUTOR = "abacCountExecutor";
+
     @Bean
     public ABACExceptionHandler exceptionHandler() {
         return new ABACExceptionHandler();
     }
 
     @Bean
-    public ABACRequestFilter abacFilter(Repositories repos, EntityManager em, PlatformTransactionManager tm) {
-        return new ABACRequestFilter(repos, em, tm);
+    public ABACContextDecoder abacContextDecoder() {
+        return new ABACContextDecoder();
+    }
+
+    @Bean
+    public AbacMetrics abacMetrics(ObjectProvider<MeterRegistry> registry) {
+        return new AbacMetrics(registry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    @Bean
+    public CompiledPolicyCache compiledPolicyCache() {
+        return new CompiledPolicyCache();
+    }
+
+    // the policy binds its values as parameters itself; padding in lists lets policies of similar size share query
+    // plans. The literal handling of the application's own criteria queries is left alone
+    @Bean
+    public HibernatePropertiesCustomizer abacHibernatePropertiesCustomizer() {
+        return properties -> properties.putIfAbsent("hibernate.query.in_clause_parameter_padding", "true");
+    }
+
+    // Boot's task executor only applies a unique TaskDecorator; applications declaring their own should delegate to
+    // ABACContextTaskDecorator from it
+    @Bean
+    public TaskDecorator abacContextTaskDecorator() {
+        return new ABACContextTaskDecorator();
     }
 
     @Bean
-    public FilterRegistrationBean<ABACRequestFilter> abacFilterRegistration(Repositories repos, EntityManager em, PlatformTransactionManager tm) {
+    public ABACRouteTable abacRouteTable(Repositories repos, EntityManager em, RepositoryRestConfiguration restConfig, ObjectProvider<RestConfiguration> contentConfig) {
+
+        // only repositories whose queries can be augmented with the policy are protected
+        Predicate<RepositoryInformation> isProtected = ri -> QuerydslPredicateExecutor.class.isAssignableFrom(ri.getRepositoryInterface());
+
+        RestConfiguration content = contentConfig.getIfAvailable();
+        return ABACRouteTable.build(repos, em, isProtected, restConfig.getBasePath(), content != null ? content.getBaseUri() : null);
+    }
+
+    @Bean
+    public PolicyHandleRegistry policyHandleRegistry() {
+        return new PolicyHandleRegistry();
+    }
+
+    @Bean
+    public PolicyHandleController policyHandleController(ABACContextDecoder decoder, PolicyHandleRegistry policyHandleRegistry) {
+        return new PolicyHandleController(decoder, policyHandleRegistry);
+    }
+
+    @Bean
+    public ABACBatchController abacBatchController(ABACRouteTable routes, EntityManager em, CompiledPolicyCache compiledPolicyCache, AbacMetrics abacMetrics) {
+        return new ABACBatchController(routes, em, compiledPolicyCache, abacMetrics);
+    }
+
+    @Bean
+    public AbacDeletes abacDeletes(EntityManager em, PlatformTransactionManager tm, CompiledPolicyCache compiledPolicyCache, AbacMetrics abacMetrics) {
+        return new AbacDeletes(em, tm, compiledPolicyCache, abacMetrics);
+    }
+
+    @Bean
+    public AbacDeleteController abacDeleteController(ABACRouteTable routes, AbacDeletes abacDeletes) {
+        return new AbacDeleteController(routes, abacDeletes);
+    }
+
+    @Bean
+    public AbacUpdates abacUpdates(EntityManager em, PlatformTransactionManager tm, CompiledPolicyCache compiledPolicyCache, AbacMetrics abacMetrics) {
+        return new AbacUpdates(em, tm, compiledPolicyCache, abacMetrics);
+    }
+
+    @Bean
+    public AbacUpdateController abacUpdateController(ABACRouteTable routes, AbacUpdates abacUpdates) {
+        return new AbacUpdateController(routes, abacUpdates);
+    }
+
+    // item updates of protected repositories that opt in to conditional updates take precedence over Spring Data REST
+    @Bean
+    public SmartInitializingSingleton abacItemMappings(@Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping mapping, ABACRouteTable routes, AbacUpdateController abacUpdateController) {
+        return () -> {
+            if (routes.getItemPattern() == null) {
+                return;
+            }
+
+            mapping.registerMapping(RequestMappingInfo.paths(routes.getItemPattern())
+                            .methods(RequestMethod.PUT, RequestMethod.PATCH)
+                            .headers(ABACRequestFilter.ABAC_CONTEXT_HEADER, AbacUpdateController.CONDITIONAL_UPDATE_HEADER + "=true")
+                            .consumes(MediaType.APPLICATION_JSON_VALUE, "application/hal+json", "application/merge-patch+json")
+                            .build(),
+                    abacUpdateController,
+                    ReflectionUtils.findMethod(AbacUpdateController.class, "update", String.class, String.class, String.class, byte[].class, HttpServletRequest.class, HttpServletResponse.class));
+        };
+    }
+
+    // Server-side residual policy acquisition is enabled by contributing a ResidualPolicyCompiler bean; it then
+    // replaces X-ABAC-Context, and requests without a principal are answered with 401
+    @Bean
+    public ABACRequestFilter abacFilter(ABACRouteTable routes, EntityManager em, PlatformTransactionManager tm, ABACContextDecoder decoder, PolicyHandleRegistry policyHandleRegistry, ObjectProvider<ResidualPolicyCompiler> compiler, ObjectProvider<PolicyInputResolver> inputResolver, AbacMetrics abacMetrics) {
+
+        ResidualPolicyCompiler residualPolicyCompiler = compiler.getIfAvailable();
+        ResidualPolicyCache residualPolicies = null;
+        if (residualPolicyCompiler != null) {
+            residualPolicies = new ResidualPolicyCache(residualPolicyCompiler);
+        }
+
+        return new ABACRequestFilter(routes, em, tm, decoder, policyHandleRegistry, residualPolicies, inputResolver.getIfAvailable(() -> new PrincipalPolicyInputResolver("brokerId")), abacMetrics);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ABACRequestFilter> abacFilterRegistration(ABACRequestFilter abacFilter, ABACRouteTable routes) {
         FilterRegistrationBean<ABACRequestFilter> registrationBean = new FilterRegistrationBean<>();
 
-        registrationBean.setFilter(abacFilter(repos, em, tm));
+        registrationBean.setFilter(abacFilter);
+        registrationBean.setUrlPatterns(routes.getUrlPatterns());
 
-        // TODO: these URIs need to be extracted
-        registrationBean.addUrlPatterns("/accountStates/*");
-        registrationBean.addUrlPatterns("/content/*");
+        // without patterns the filter would be mapped to /*
+        registrationBean.setEnabled(!routes.getUrlPatterns().isEmpty());
 
         return registrationBean;
     }
@@ -92,14 +230,17 @@ public class ABACConfiguration {
         };
     }
 
+    // Page and count queries run concurrently when an executor bean named abacCountExecutor is contributed
     @Bean
-    public RootResourceInformationHandlerMethodArgumentResolver querydslRepoRequestArgumentResolver(Repositories repositories, ResourceMetadataHandlerMethodArgumentResolver resourceMetadataHandlerMethodArgumentResolver, RepositoryInvokerFactory repositoryInvokerFactory, ApplicationContext applicationContext, ConversionService defaultConversionService) {
+    public RootResourceInformationHandlerMethodArgumentResolver querydslRepoRequestArgumentResolver(Repositories repositories, ResourceMetadataHandlerMethodArgumentResolver resourceMetadataHandlerMethodArgumentResolver, RepositoryInvokerFactory repositoryInvokerFactory, ApplicationContext applicationContext, ConversionService defaultConversionService, CompiledPolicyCache compiledPolicyCache, AbacMetrics abacMetrics, @Qualifier(ABAC_COUNT_EXECUTOR) ObjectProvider<Executor> countExecutor) {
 
         QuerydslBindingsFactory factory = applicationContext.getBean(QuerydslBindingsFactory.class);
-        XenitQuerydslPredicateBuilder predicateBuilder = new XenitQuerydslPredicateBuilder(defaultConversionService, factory.getEntityPathResolver());
+        XenitQuerydslPredicateBuilder predicateBuilder = new XenitQuerydslPredicateBuilder(defaultConversionService, factory.getEntityPathResolver(), compiledPolicyCache, abacMetrics);
 
-        return new XenitQuerydslAwareRootResourceInformationHandlerMethodArgumentResolver(repositories,
+        XenitQuerydslAwareRootResourceInformationHandlerMethodArgumentResolver resolver = new XenitQuerydslAwareRootResourceInformationHandlerMethodArgumentResolver(repositories,
                 repositoryInvokerFactory, resourceMetadataHandlerMethodArgumentResolver, predicateBuilder, factory);
+        resolver.setCountExecutor(countExecutor.getIfAvailable());
+        return resolver;
     }
 
     // QueryDSL repo request argument resolver activation
@@ -107,14 +248,36 @@ public class ABACConfiguration {
 
     public static class ABACRequestFilter implements Filter {
 
-        private final Repositories repos;
+        public static final String ABAC_CONTEXT_HEADER = "X-ABAC-Context";
+
+        private final UrlPathHelper pathHelper = new UrlPathHelper();
+
+        private final ABACRouteTable routes;
         private final EntityManager em;
         private final PlatformTransactionManager tm;
+        private final ABACContextDecoder decoder;
+        private final PolicyHandleRegistry handles;
+        private final ResidualPolicyCache residualPolicies;
+        private final PolicyInputResolver inputResolver;
+        private final AbacMetrics metrics;
+
+        public ABACRequestFilter(ABACRouteTable routes, EntityManager em, PlatformTransactionManager tm, ABACContextDecoder decoder, PolicyHandleRegistry handles) {
+            this(routes, em, tm, decoder, handles, new AbacMetrics());
+        }
+
+        public ABACRequestFilter(ABACRouteTable routes, EntityManager em, PlatformTransactionManager tm, ABACContextDecoder decoder, PolicyHandleRegistry handles, AbacMetrics metrics) {
+            this(routes, em, tm, decoder, handles, null, null, metrics);
+        }
 
-        public ABACRequestFilter(Repositories repos, EntityManager em, PlatformTransactionManager tm) {
-            this.repos = repos;
+        public ABACRequestFilter(ABACRouteTable routes, EntityManager em, PlatformTransactionManager tm, ABACContextDecoder decoder, PolicyHandleRegistry handles, ResidualPolicyCache residualPolicies, PolicyInputResolver inputResolver, AbacMetrics metrics) {
+            this.routes = routes;
             this.em = em;
             this.tm = tm;
+            this.decoder = decoder;
+            this.handles = handles;
+            this.residualPolicies = residualPolicies;
+            this.inputResolver = inputResolver;
+            this.metrics = metrics;
         }
 
         @Override
@@ -124,37 +287,64 @@ public class ABACConfiguration {
 
             HttpServletRequest request = (HttpServletRequest) servletRequest;
 
-            String path = new UrlPathHelper().getLookupPathForRequest(request);
-            String[] pathElements = path.split("/");
-            RepositoryInformation ri = RepositoryUtils.findRepositoryInformation(repos, pathElements[1]);
-            if (ri == null) {
-                ri = RepositoryUtils.findRepositoryInformation(repos, pathElements[2]);
-            }
-            if (ri == null) {
+            String path = pathHelper.getLookupPathForRequest(request);
+            EntityInformation ei = routes.lookup(path);
+            if (ei == null) {
                 throw new IllegalStateException(format("Unable to resolve entity class: %s", path));
             }
-            Class<?> entityClass = ri.getDomainType();
 
-            EntityInformation ei = JpaEntityInformationSupport.getEntityInformation(entityClass, em);
-            if (entityClass != null) {
-                EntityContext.setCurrentEntityContext(ei);
+            // Emad
+            Disjunction disjunction = null;
+            String abacContext = request.getHeader(ABAC_CONTEXT_HEADER);
+
+            Timer.Sample sample = metrics.start();
+            if (residualPolicies != null) {
+                // server-side: the policy is derived from the principal only, a client's X-ABAC-Context is ignored
+                Map<String, Object> input = inputResolver.resolve(request);
+                if (input == null) {
+                    metrics.denied(AbacMetrics.DECODE, ei.getJavaType(), request.getMethod());
+                    ((HttpServletResponse) servletResponse).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Authentication required");
+                    return;
+                }
+                disjunction = residualPolicies.get(input);
+                if (disjunction == null) {
+                    metrics.denied(AbacMetrics.DECODE, ei.getJavaType(), request.getMethod());
+                    ((HttpServletResponse) servletResponse).sendError(HttpServletResponse.SC_FORBIDDEN, "No policy for principal");
+                    return;
+                }
+            } else if (abacContext != null && PolicyHandleRegistry.isHandle(abacContext)) {
+                disjunction = handles.resolve(abacContext);
+                if (disjunction == null) {
+                    metrics.denied(AbacMetrics.DECODE, ei.getJavaType(), request.getMethod());
+                    ((HttpServletResponse) servletResponse).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unknown or expired policy handle");
+                    return;
+                }
+            } else if (abacContext != null) {
+                disjunction = decoder.decode(abacContext);
             }
+            metrics.stop(sample, AbacMetrics.DECODE, ei.getJavaType(), request.getMethod());
 
-            EntityManagerContext.setCurrentEntityContext(em, tm);
+            if (disjunction != null) {
+                metrics.policySize(disjunction);
+            }
 
-            // Emad
-            String abacContext = request.getHeader("X-ABAC-Context");
-            if (abacContext != null) {
-                byte[] abacContextProtobytes = Base64.getDecoder().decode(abacContext);
-                PDisjunction pDisjunction = PDisjunction.newBuilder().mergeFrom(abacContextProtobytes).build();
-                Disjunction disjunction = ProtobufUtils.to(pDisjunction, "");
+            EntityContext.setCurrentEntityContext(ei);
+            EntityManagerContext.setCurrentEntityContext(em, tm);
+            if (disjunction != null) {
                 ABACContext.setCurrentAbacContext(disjunction);
             }
-
-            filterChain.doFilter(servletRequest, servletResponse);
-
-            ABACContext.clear();
-            EntityContext.clear();
+            SliceContext.setSliced(Boolean.parseBoolean(request.getHeader(SliceContext.SLICE_HEADER)));
+            EntityMemo.begin();
+
+            try {
+                filterChain.doFilter(servletRequest, servletResponse);
+            } finally {
+                ABACContext.clear();
+                EntityContext.clear();
+                EntityManagerContext.clear();
+                SliceContext.clear();
+                EntityMemo.clear();
+            }
         }
     }
 }
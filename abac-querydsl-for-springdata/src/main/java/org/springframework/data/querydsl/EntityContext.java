@@ -1,20 +0,0 @@
-package org.springframework.data.querydsl;
-
-import org.springframework.data.repository.core.EntityInformation;
-
-public class EntityContext {
-
-    private static ThreadLocal<EntityInformation> currentEntityContext = new InheritableThreadLocal<EntityInformation>();
-
-    public static EntityInformation getCurrentEntityContext() {
-        return currentEntityContext.get();
-    }
-
-    public static void setCurrentEntityContext(EntityInformation ei) {
-        currentEntityContext.set(ei);
-    }
-
-    public static void clear() {
-        currentEntityContext.set(null);
-    }
-}
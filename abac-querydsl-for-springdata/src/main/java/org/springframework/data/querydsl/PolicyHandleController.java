@@ -0,0 +1,45 @@
+package org.springframework.data.querydsl;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.example.abac_commons.ABACContextDecoder;
+import com.example.abac_commons.PolicyHandleRegistry;
+
+/**
+ * Registers a residual policy, sent once as a full X-ABAC-Context header, and returns a handle that can be
+ * sent as X-ABAC-Context on subsequent requests in its place.
+ */
+@ResponseBody
+@RequestMapping
+public class PolicyHandleController {
+
+    public static final String PATH = "/abac/policies";
+
+    private final ABACContextDecoder decoder;
+    private final PolicyHandleRegistry registry;
+
+    public PolicyHandleController(ABACContextDecoder decoder, PolicyHandleRegistry registry) {
+        this.decoder = decoder;
+        this.registry = registry;
+    }
+
+    @PostMapping(PATH)
+    public ResponseEntity<Map<String, String>> register(@RequestHeader(ABACConfiguration.ABACRequestFilter.ABAC_CONTEXT_HEADER) String abacContext) throws IOException {
+
+        if (PolicyHandleRegistry.isHandle(abacContext)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String handle = registry.register(decoder.decode(abacContext));
+        return ResponseEntity.status(HttpStatus.CREATED).body(Collections.singletonMap("handle", handle));
+    }
+}
@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import org.springframework.core.MethodParameter;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
@@ -25,6 +26,7 @@ public class XenitQuerydslAwareRootResourceInformationHandlerMethodArgumentResol
     private final Repositories repositories;
     private final XenitQuerydslPredicateBuilder predicateBuilder;
     private final QuerydslBindingsFactory factory;
+    private Executor countExecutor;
 
     /**
      * Creates a new {@link QuerydslAwareRootResourceInformationHandlerMethodArgumentResolver} using the given
@@ -45,6 +47,13 @@ public class XenitQuerydslAwareRootResourceInformationHandlerMethodArgumentResol
         this.factory = factory;
     }
 
+    /**
+     * @see XenitQuerydslRepositoryInvokerAdapter#setCountExecutor(Executor)
+     */
+    public void setCountExecutor(Executor countExecutor) {
+        this.countExecutor = countExecutor;
+    }
+
     /*
      * (non-Javadoc)
      * @see org.springframework.data.rest.webmvc.config.RootResourceInformationHandlerMethodArgumentResolver#postProcess(org.springframework.data.repository.support.RepositoryInvoker, java.lang.Class, java.util.Map)
@@ -77,9 +86,11 @@ public class XenitQuerydslAwareRootResourceInformationHandlerMethodArgumentResol
     }
 
     @SuppressWarnings("unchecked")
-    private static RepositoryInvoker getQuerydslAdapter(RepositoryInvoker invoker,
+    private RepositoryInvoker getQuerydslAdapter(RepositoryInvoker invoker,
             QuerydslPredicateExecutor<?> repository, Predicate predicate) {
-        return new XenitQuerydslRepositoryInvokerAdapter(invoker, (QuerydslPredicateExecutor<Object>) repository, predicate);
+        XenitQuerydslRepositoryInvokerAdapter adapter = new XenitQuerydslRepositoryInvokerAdapter(invoker, (QuerydslPredicateExecutor<Object>) repository, predicate, predicateBuilder.getMetrics());
+        adapter.setCountExecutor(countExecutor);
+        return adapter;
     }
 
     /**
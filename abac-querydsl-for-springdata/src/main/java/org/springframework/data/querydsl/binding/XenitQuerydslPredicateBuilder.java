@@ -20,13 +20,17 @@ import org.springframework.util.Assert;
 import org.springframework.util.MultiValueMap;
 import org.springframework.util.StringUtils;
 
+import com.example.abac_commons.ABACContext;
+import com.example.abac_commons.AbacMetrics;
+import com.example.abac_commons.CompiledPolicyCache;
+import com.example.abac_commons.EntityContext;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Path;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
-import com.querydsl.core.types.dsl.PathBuilder;
 
-import be.heydari.lib.converters.querydsl.QueryDslUtils;
+import io.micrometer.core.instrument.Timer;
+
 import be.heydari.lib.expressions.Disjunction;
 
 public class XenitQuerydslPredicateBuilder {
@@ -35,15 +39,33 @@ public class XenitQuerydslPredicateBuilder {
     private final MultiValueBinding<Path<? extends Object>, Object> defaultBinding;
     private final Map<PathInformation, Path<?>> paths;
     private final EntityPathResolver resolver;
+    private final CompiledPolicyCache policyCache;
+    private final AbacMetrics metrics;
 
     public XenitQuerydslPredicateBuilder(ConversionService conversionService, EntityPathResolver resolver) {
+        this(conversionService, resolver, new CompiledPolicyCache());
+    }
+
+    public XenitQuerydslPredicateBuilder(ConversionService conversionService, EntityPathResolver resolver, CompiledPolicyCache policyCache) {
+        this(conversionService, resolver, policyCache, new AbacMetrics());
+    }
+
+    public XenitQuerydslPredicateBuilder(ConversionService conversionService, EntityPathResolver resolver, CompiledPolicyCache policyCache, AbacMetrics metrics) {
 
         Assert.notNull(conversionService, "ConversionService must not be null!");
+        Assert.notNull(policyCache, "CompiledPolicyCache must not be null!");
+        Assert.notNull(metrics, "AbacMetrics must not be null!");
 
         this.defaultBinding = new QuerydslDefaultBinding();
         this.conversionService = conversionService;
         this.paths = new ConcurrentHashMap<>();
         this.resolver = resolver;
+        this.policyCache = policyCache;
+        this.metrics = metrics;
+    }
+
+    public AbacMetrics getMetrics() {
+        return metrics;
     }
 
     public Predicate getPredicate(TypeInformation<?> type, MultiValueMap<String, String> values, QuerydslBindings bindings) {
@@ -57,13 +79,16 @@ public class XenitQuerydslPredicateBuilder {
 //        }
 
         // abac context
-        Disjunction abacContext = org.springframework.data.querydsl.ABACContext.getCurrentAbacContext();
+        Disjunction abacContext = ABACContext.getCurrentAbacContext();
         if (abacContext != null) {
 
-            Class<?> subjectType = org.springframework.data.querydsl.EntityContext.getCurrentEntityContext().getJavaType();
-            PathBuilder entityPath = new PathBuilder(subjectType, toAlias(subjectType));
-            BooleanExpression abacExpr = QueryDslUtils.from(abacContext, entityPath, org.springframework.data.querydsl.EntityContext.getCurrentEntityContext().getJavaType());
+            Class<?> subjectType = EntityContext.getCurrentEntityContext().getJavaType();
+
+            Timer.Sample sample = metrics.start();
+            BooleanExpression abacExpr = policyCache.get(abacContext, subjectType, toAlias(subjectType));
+            metrics.stop(sample, AbacMetrics.PREDICATE, subjectType, "getPredicate");
             Assert.notNull(abacExpr, "abac expression cannot be null");
+
             builder.and(abacExpr);
         }
 
@@ -1,18 +1,22 @@
 package org.springframework.data.querydsl.binding;
 
 import java.lang.reflect.Field;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import javax.persistence.Id;
 
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.content.commons.utils.BeanUtils;
 import org.springframework.content.commons.utils.DomainObjectUtils;
 import org.springframework.core.convert.ConversionService;
-import org.springframework.data.querydsl.ABACContext;
-import org.springframework.data.querydsl.EntityContext;
-import org.springframework.data.querydsl.EntityManagerContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.support.Querydsl;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
 import org.springframework.data.querydsl.QuerydslRepositoryInvokerAdapter;
 import org.springframework.data.repository.support.RepositoryInvoker;
@@ -21,13 +25,26 @@ import org.springframework.format.support.DefaultFormattingConversionService;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
+import com.example.abac_commons.ABACContext;
+import com.example.abac_commons.ABACContextExecutors;
+import com.example.abac_commons.AbacMetrics;
+import com.example.abac_commons.EntityContext;
+import com.example.abac_commons.EntityManagerContext;
+import com.example.abac_commons.EntityMemo;
+import com.example.abac_commons.PolicyPredicates;
+import com.example.abac_commons.PropertyAccessor;
+import com.example.abac_commons.SliceContext;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.JPQLQuery;
+
+import io.micrometer.core.instrument.Timer;
 
 import be.heydari.lib.expressions.Disjunction;
 
@@ -35,13 +52,55 @@ public class XenitQuerydslRepositoryInvokerAdapter extends QuerydslRepositoryInv
 
     private QuerydslPredicateExecutor<Object> executor;
     private Predicate predicate;
+    private AbacMetrics metrics;
+    private Executor countExecutor;
 
     private ConversionService conversionService = new DefaultFormattingConversionService();
 
     public XenitQuerydslRepositoryInvokerAdapter(RepositoryInvoker delegate, QuerydslPredicateExecutor<Object> executor, Predicate predicate) {
+        this(delegate, executor, predicate, new AbacMetrics());
+    }
+
+    public XenitQuerydslRepositoryInvokerAdapter(RepositoryInvoker delegate, QuerydslPredicateExecutor<Object> executor, Predicate predicate, AbacMetrics metrics) {
         super(delegate, executor, predicate);
         this.executor = executor;
         this.predicate = predicate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs the count query of a page concurrently with the page query, on the given executor's threads and their
+     * own connections, instead of after it on the request thread. Null, the default, runs them sequentially.
+     */
+    public void setCountExecutor(Executor countExecutor) {
+        this.countExecutor = countExecutor != null ? ABACContextExecutors.wrap(countExecutor) : null;
+    }
+
+    @Override
+    public Iterable<Object> invokeFindAll(Pageable pageable) {
+        Timer.Sample sample = metrics.start();
+        try {
+            EntityManagerContext context = EntityManagerContext.getCurrentEntityContext();
+            if (SliceContext.isSliced() && pageable.isPaged() && context != null) {
+                return findSlice(pageable);
+            }
+            if (countExecutor != null && pageable.isPaged() && context != null && context.getTm() != null) {
+                return findPage(pageable, context);
+            }
+            return super.invokeFindAll(pageable);
+        } finally {
+            metrics.stop(sample, AbacMetrics.QUERY, domainType(), "findAll");
+        }
+    }
+
+    @Override
+    public Iterable<Object> invokeFindAll(Sort sort) {
+        Timer.Sample sample = metrics.start();
+        try {
+            return super.invokeFindAll(sort);
+        } finally {
+            metrics.stop(sample, AbacMetrics.QUERY, domainType(), "findAll");
+        }
     }
 
     @Override
@@ -50,18 +109,87 @@ public class XenitQuerydslRepositoryInvokerAdapter extends QuerydslRepositoryInv
         BooleanBuilder builder = new BooleanBuilder();
 
         Class<?> subjectType = EntityContext.getCurrentEntityContext().getJavaType();
+        Long entityId = conversionService.convert(id, Long.class);
+        Disjunction abacContext = ABACContext.getCurrentAbacContext();
+        if (abacContext != null) {
+            Optional<Object> memoized = EntityMemo.get(subjectType, entityId, abacContext, predicate);
+            if (memoized != null) {
+                return (Optional<T>) memoized;
+            }
+        }
+
         PathBuilder entityPath = new PathBuilder(subjectType, toAlias(subjectType));
-        BooleanExpression idExpr = idExpr(conversionService.convert(id, Long.class), entityPath);
+        BooleanExpression idExpr = idExpr(entityId, entityPath);
         Assert.notNull(idExpr, "id expression cannot be null");
         builder.and(idExpr);
         builder.and(predicate);
 
-        return (Optional<T>) executor.findOne(builder.getValue());
+        Timer.Sample sample = metrics.start();
+        try {
+            Optional<T> entity = (Optional<T>) executor.findOne(builder.getValue());
+            if (abacContext != null) {
+                EntityMemo.put(subjectType, entityId, abacContext, predicate, entity);
+            }
+            return entity;
+        } finally {
+            metrics.stop(sample, AbacMetrics.QUERY, subjectType, "findById");
+        }
+    }
+
+    // QuerydslPredicateExecutor always counts, so count free pages are queried directly
+    private Page<Object> findSlice(Pageable pageable) {
+        Class<?> subjectType = domainType();
+        PathBuilder<Object> entityPath = new PathBuilder(subjectType, toAlias(subjectType));
+        Querydsl querydsl = new Querydsl(EntityManagerContext.getCurrentEntityContext().getEm(), entityPath);
+
+        JPQLQuery<Object> query = querydsl.createQuery(entityPath).select(entityPath);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        querydsl.applySorting(pageable.getSort(), query);
+        query.offset(pageable.getOffset());
+        query.limit(pageable.getPageSize() + 1);
+
+        return SliceContext.page(query.fetch(), pageable);
     }
 
-//  When saving an entity we first save and then findById that applies the abac policy.  If this find return null we throw a RNFE that rollback
-//  the transaction
+    /**
+     * Starts the count query on the count executor, in a read-only transaction of its own, and queries the page
+     * meanwhile. The shared entity manager binds the worker to its own connection.
+     */
+    private Page<Object> findPage(Pageable pageable, EntityManagerContext context) {
+        Class<?> subjectType = domainType();
+        PathBuilder<Object> entityPath = new PathBuilder(subjectType, toAlias(subjectType));
+        Querydsl querydsl = new Querydsl(context.getEm(), entityPath);
+
+        JPQLQuery<Object> countQuery = querydsl.createQuery(entityPath).select(entityPath);
+        JPQLQuery<Object> query = querydsl.createQuery(entityPath).select(entityPath);
+        if (predicate != null) {
+            countQuery.where(predicate);
+            query.where(predicate);
+        }
+        querydsl.applyPagination(pageable, query);
+
+        TransactionTemplate readOnly = new TransactionTemplate(context.getTm());
+        readOnly.setReadOnly(true);
+        CompletableFuture<Long> total = CompletableFuture.supplyAsync(() -> readOnly.execute(status -> countQuery.fetchCount()), countExecutor);
+
+        List<Object> content = query.fetch();
+        try {
+            return new PageImpl<>(content, pageable, total.join());
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ce.getCause();
+            }
+            throw ce;
+        }
+    }
 
+//  When saving an entity we first save and then check the abac policy against the saved entity's state, in memory
+//  when it only compares properties, and otherwise with a findById.  Lazy associations are compared by the id held
+//  in their proxies and are not loaded.  If the check fails we throw a RNFE that rolls back the transaction, which
+//  the save joins
+//
 //  OPA policies are written in terms of the obhect being saved
 //
     @Override
@@ -74,6 +202,7 @@ public class XenitQuerydslRepositoryInvokerAdapter extends QuerydslRepositoryInv
 
         PlatformTransactionManager tm = EntityManagerContext.getCurrentEntityContext().getTm();
 
+        Timer.Sample sample = metrics.start();
         TransactionStatus status = null;
         T entityToReturn = null;
         try {
@@ -83,16 +212,16 @@ public class XenitQuerydslRepositoryInvokerAdapter extends QuerydslRepositoryInv
             }
 
             T savedEntity = super.invokeSave(object);
+            Long savedId = conversionService.convert(id(savedEntity), Long.class);
+            EntityMemo.evict(domainType(), savedId);
 
-            Field idField = DomainObjectUtils.getIdField(object.getClass());
-            Assert.notNull(idField, "missing id field");
-
-            BeanWrapper wrapper = new BeanWrapperImpl(savedEntity);
-            Object id = wrapper.getPropertyValue(idField.getName());
-
-            Optional<T> fetchedEntity = this.invokeFindById(id);
+            java.util.function.Predicate<Object> policy = PolicyPredicates.of(abacContext, (Class<Object>) savedEntity.getClass());
+            Optional<T> fetchedEntity = policy != null
+                    ? Optional.of(savedEntity).filter(policy)
+                    : this.invokeFindById(savedId);
             if (!fetchedEntity.isPresent()) {
-                throw new ResourceNotFoundException(String.format("id: %s", id));
+                metrics.denied(AbacMetrics.SAVE_REFETCH, object.getClass(), "save");
+                throw new ResourceNotFoundException(String.format("id: %s", savedId));
             }
 
             entityToReturn = fetchedEntity.get();
@@ -105,6 +234,8 @@ public class XenitQuerydslRepositoryInvokerAdapter extends QuerydslRepositoryInv
                 tm.rollback(status);
             }
             throw e;
+        } finally {
+            metrics.stop(sample, AbacMetrics.SAVE_REFETCH, object.getClass(), "save");
         }
 
         return entityToReturn;
@@ -132,6 +263,19 @@ public class XenitQuerydslRepositoryInvokerAdapter extends QuerydslRepositoryInv
 //        }
 //    }
 
+    private Object id(Object entity) {
+        Field idField = DomainObjectUtils.getIdField(entity.getClass());
+        Assert.notNull(idField, "missing id field");
+
+        PropertyAccessor accessor = PropertyAccessor.of(entity.getClass(), idField.getName());
+        Assert.notNull(accessor, "missing id getter");
+        return accessor.get(entity);
+    }
+
+    private Class<?> domainType() {
+        return EntityContext.getCurrentEntityContext() != null ? EntityContext.getCurrentEntityContext().getJavaType() : null;
+    }
+
     private String toAlias(Class<?> subjectType) {
 
         char c[] = subjectType.getSimpleName().toCharArray();
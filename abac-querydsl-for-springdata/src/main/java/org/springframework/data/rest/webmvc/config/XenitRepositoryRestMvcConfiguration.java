@@ -37,6 +37,8 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.util.pattern.PathPatternParser;
 
+import com.example.abac_commons.AbacMetrics;
+import com.example.abac_commons.CompiledPolicyCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class XenitRepositoryRestMvcConfiguration extends RepositoryRestMvcConfiguration {
@@ -99,7 +101,9 @@ public class XenitRepositoryRestMvcConfiguration extends RepositoryRestMvcConfig
         if (QuerydslUtils.QUERY_DSL_PRESENT) {
 
             QuerydslBindingsFactory factory = applicationContext.getBean(QuerydslBindingsFactory.class);
-            XenitQuerydslPredicateBuilder predicateBuilder = new XenitQuerydslPredicateBuilder(defaultConversionService, factory.getEntityPathResolver());
+            CompiledPolicyCache policyCache = applicationContext.getBeanProvider(CompiledPolicyCache.class).getIfAvailable(CompiledPolicyCache::new);
+            AbacMetrics metrics = applicationContext.getBeanProvider(AbacMetrics.class).getIfAvailable(AbacMetrics::new);
+            XenitQuerydslPredicateBuilder predicateBuilder = new XenitQuerydslPredicateBuilder(defaultConversionService, factory.getEntityPathResolver(), policyCache, metrics);
 
             return new XenitQuerydslAwareRootResourceInformationHandlerMethodArgumentResolver(repositories,
                     repositoryInvokerFactory, resourceMetadataHandlerMethodArgumentResolver, predicateBuilder, factory);
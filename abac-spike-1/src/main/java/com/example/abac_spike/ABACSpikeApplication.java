@@ -23,6 +23,8 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.web.context.annotation.RequestScope;
 
+import com.example.abac_commons.ABACContext;
+
 @SpringBootApplication
 @EnableAspectJAutoProxy()
 @EnableAbac
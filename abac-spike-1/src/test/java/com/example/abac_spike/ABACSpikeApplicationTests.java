@@ -8,17 +8,24 @@ import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
 import static com.jayway.restassured.RestAssured.given;
 import static com.jayway.restassured.config.EncoderConfig.encoderConfig;
 import static java.lang.String.format;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.isIn;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
@@ -33,6 +40,8 @@ import org.apache.http.HttpStatus;
 import org.apache.http.auth.BasicUserPrincipal;
 import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,12 +53,15 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.versions.VersionInfo;
 import org.springframework.web.client.RestTemplate;
 
+import com.example.abac_commons.AbacUpdateController;
+import com.example.abac_commons.SliceContext;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.paulcwarren.ginkgo4j.Ginkgo4jConfiguration;
 import com.github.paulcwarren.ginkgo4j.Ginkgo4jSpringRunner;
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.path.json.JsonPath;
+import com.jayway.restassured.response.Response;
 
 import be.heydari.AstWalker;
 import be.heydari.lib.converters.protobuf.ProtobufUtils;
@@ -61,7 +73,8 @@ import lombok.Data;
 @RunWith(Ginkgo4jSpringRunner.class)
 @Ginkgo4jConfiguration(threads = 1)
 @SpringBootTest(classes = {
-        ABACSpikeApplication.class }, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+        ABACSpikeApplication.class }, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 public class ABACSpikeApplicationTests {
 
     @LocalServerPort
@@ -392,6 +405,81 @@ public class ABACSpikeApplicationTests {
                     });
                 });
 
+                Context("#keyset pagination", () -> {
+
+                    Context("when a broker pages through account statements", () -> {
+
+                        It("should only return the ones they own, in order, across pages", () -> {
+
+                            String abacContext = queryOPA(Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/")));
+
+                            List<String> names = new ArrayList<>();
+                            String continuation = "";
+                            do {
+                                Response response = given()
+                                        .header("X-ABAC-Context", abacContext)
+                                        .get(format("/accountStates?size=2&sort=name&continuation=%s", continuation))
+                                        .then()
+                                        .statusCode(HttpStatus.SC_OK)
+                                        .extract()
+                                        .response();
+
+                                List<String> page = response.jsonPath().getList("_embedded.accountStates.name");
+                                names.addAll(page);
+                                continuation = response.getHeader(KeysetContext.CONTINUATION_HEADER);
+                            } while (continuation != null);
+
+                            assertThat(names, hasItems("aaa", "ppp"));
+                            assertThat(names, not(hasItem("www")));
+
+                            List<String> sorted = new ArrayList<>(names);
+                            Collections.sort(sorted);
+                            assertThat(names, is(sorted));
+                        });
+                    });
+
+                    Context("when the continuation token is malformed", () -> {
+
+                        It("should fail with a 400", () -> {
+
+                            given()
+                            .header("X-ABAC-Context", queryOPA(Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/"))))
+                            .get("/accountStates?size=2&sort=name&continuation=not*base64")
+                            .then()
+                            .statusCode(HttpStatus.SC_BAD_REQUEST);
+                        });
+                    });
+                });
+
+                Context("#slice", () -> {
+
+                    Context("when a broker requests a count free page of account statements", () -> {
+
+                        It("should only return the ones they own, without counting them", () -> {
+
+                            String abacContext = queryOPA(Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/")));
+
+                            Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+                            statistics.clear();
+
+                            json = given()
+                                    .header("X-ABAC-Context", abacContext)
+                                    .header(SliceContext.SLICE_HEADER, "true")
+                                    .get("/accountStates?page=0&size=2&sort=name&name.dir=asc")
+                                    .then()
+                                    .statusCode(HttpStatus.SC_OK)
+                                    .extract()
+                                    .jsonPath();
+
+                            List<String> names = json.getList("_embedded.accountStates.name");
+                            assertThat(names.size(), is(2));
+                            assertThat(names, everyItem(isIn(new String[] {"aaa", "ppp"})));
+                            assertThat(names.get(0), is(lessThanOrEqualTo(names.get(1))));
+                            assertThat(statistics.getQueryExecutionCount(), is(1L));
+                        });
+                    });
+                });
+
                 Context("#findBy methods", () -> {
 
                     Context("given a custom findByXYZ is executed by broker foo", () -> {
@@ -534,6 +622,66 @@ public class ABACSpikeApplicationTests {
                     });
                 });
 
+                Context("#conditional update", () -> {
+
+                    Context("when a broker updates an account statement they own", () -> {
+
+                        It("should update it with one statement and answer its new version", () -> {
+
+                            Long id = Long.parseLong(StringUtils.substringAfter(tenantFooDoc1, "/accountStates/"));
+                            Long vstamp = repo.findById(id).get().getVstamp();
+                            String abacContext = queryOPA(Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/")));
+
+                            Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+                            statistics.clear();
+
+                            given()
+                            .header("X-ABAC-Context", abacContext)
+                            .header(AbacUpdateController.CONDITIONAL_UPDATE_HEADER, "true")
+                            .header("If-Match", format("\"%d\"", vstamp))
+                            .header("Content-Type", "application/json")
+                            .body("{\"name\":\"zzz updated\"}")
+                            .patch(tenantFooDoc1)
+                            .then()
+                            .statusCode(HttpStatus.SC_NO_CONTENT)
+                            .header("ETag", is(format("\"%d\"", vstamp + 1)));
+
+                            assertThat(statistics.getPrepareStatementCount(), is(1L));
+                            assertThat(repo.findById(id).get().getName(), is("zzz updated"));
+                        });
+                    });
+
+                    Context("when a broker updates an account statement they do not own", () -> {
+
+                        It("should fail with a 404", () -> {
+
+                            given()
+                            .header("X-ABAC-Context", queryOPA(Long.valueOf(StringUtils.substringAfter(brokerBarUri, "/brokers/"))))
+                            .header(AbacUpdateController.CONDITIONAL_UPDATE_HEADER, "true")
+                            .header("Content-Type", "application/json")
+                            .body("{\"name\":\"zzz updated\"}")
+                            .patch(tenantFooDoc1)
+                            .then()
+                            .statusCode(HttpStatus.SC_NOT_FOUND);
+                        });
+                    });
+
+                    Context("when the body is not a JSON object", () -> {
+
+                        It("should fail with a 400", () -> {
+
+                            given()
+                            .header("X-ABAC-Context", queryOPA(Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/"))))
+                            .header(AbacUpdateController.CONDITIONAL_UPDATE_HEADER, "true")
+                            .header("Content-Type", "application/json")
+                            .body("null")
+                            .patch(tenantFooDoc1)
+                            .then()
+                            .statusCode(HttpStatus.SC_BAD_REQUEST);
+                        });
+                    });
+                });
+
                 Context("#delete", () -> {
 
                     Context("when a broker deletes an account statement they own", () -> {
@@ -584,6 +732,81 @@ public class ABACSpikeApplicationTests {
                     });
                 });
 
+                Context("#batch", () -> {
+
+                    Context("when a broker looks up account statements they own and do not own", () -> {
+
+                        It("should only return the ones they own", () -> {
+
+                            String fooDoc1Id = StringUtils.substringAfter(tenantFooDoc1, "/accountStates/");
+                            String barDoc1Id = StringUtils.substringAfter(tenantBarDoc1, "/accountStates/");
+
+                            JsonPath results = given()
+                                    .header("X-ABAC-Context", queryOPA(Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/"))))
+                                    .get(format("/accountStates/batch?ids=%s,%s", fooDoc1Id, barDoc1Id))
+                                    .then()
+                                    .statusCode(HttpStatus.SC_OK)
+                                    .extract()
+                                    .jsonPath();
+
+                            List<String> names = results.getList("content.name");
+                            List<String> unavailable = results.getList("unavailable");
+                            assertThat(names, contains("zzz"));
+                            assertThat(unavailable, contains(barDoc1Id));
+                        });
+                    });
+                });
+
+                Context("#export", () -> {
+
+                    Context("when a broker exports account statements", () -> {
+
+                        It("should only export the ones they own", () -> {
+
+                            String csv = given()
+                                    .header("X-ABAC-Context", queryOPA(Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/"))))
+                                    .get("/accountStates/export?format=csv")
+                                    .then()
+                                    .statusCode(HttpStatus.SC_OK)
+                                    .extract()
+                                    .body()
+                                    .asString();
+
+                            String[] rows = csv.split("\r\n");
+                            assertThat(rows.length, is(greaterThan(1)));
+                            for (int i = 1; i < rows.length; i++) {
+                                assertThat(rows[i], not(containsString("www")));
+                            }
+                            assertThat(csv, containsString("aaa"));
+                            assertThat(csv, containsString("ppp"));
+                        });
+                    });
+                });
+
+                Context("#batch delete", () -> {
+
+                    Context("when a broker deletes account statements they own and do not own", () -> {
+
+                        It("should only delete the ones they own", () -> {
+
+                            String fooDoc2Id = StringUtils.substringAfter(tenantFooDoc2, "/accountStates/");
+                            String barDoc1Id = StringUtils.substringAfter(tenantBarDoc1, "/accountStates/");
+
+                            JsonPath results = given()
+                                    .header("X-ABAC-Context", queryOPA(Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/"))))
+                                    .delete(format("/accountStates/batch?ids=%s,%s", fooDoc2Id, barDoc1Id))
+                                    .then()
+                                    .statusCode(HttpStatus.SC_OK)
+                                    .extract()
+                                    .jsonPath();
+
+                            assertThat(results.getInt("deleted"), is(1));
+                            assertThat(repo.findById(Long.parseLong(fooDoc2Id)).isPresent(), is(false));
+                            assertThat(repo.findById(Long.parseLong(barDoc1Id)).isPresent(), is(true));
+                        });
+                    });
+                });
+
                 Context("#content", () -> {
 
                     Context("when a broker gets content they own", () -> {
@@ -0,0 +1,70 @@
+package com.example.abac_spike;
+
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.Describe;
+import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import com.example.abac_commons.AbacDeleteController;
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jConfiguration;
+import com.github.paulcwarren.ginkgo4j.Ginkgo4jSpringRunner;
+
+/**
+ * Loads the spike 1 context, which component scans the package of the library it enables, and checks the
+ * library's controllers are registered once.
+ */
+@RunWith(Ginkgo4jSpringRunner.class)
+@Ginkgo4jConfiguration(threads = 1)
+@SpringBootTest(classes = { ABACSpikeApplication.class })
+public class ABACSpikeContextTests {
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    @Qualifier("requestMappingHandlerMapping")
+    private RequestMappingHandlerMapping mapping;
+
+    {
+        Describe("the spike 1 context", () -> {
+
+            It("should register the policy handle controller once", () -> {
+                assertThat(context.getBeansOfType(PolicyHandleController.class).size(), is(1));
+                assertThat(handlers(PolicyHandleController.class), is(1L));
+            });
+
+            It("should register the batch controller once", () -> {
+                assertThat(context.getBeansOfType(AbacBatchController.class).size(), is(1));
+                assertThat(handlers(AbacBatchController.class), is(1L));
+            });
+
+            It("should register the delete controller once", () -> {
+                assertThat(context.getBeansOfType(AbacDeleteController.class).size(), is(1));
+                assertThat(handlers(AbacDeleteController.class), is(1L));
+            });
+
+            It("should register the export controller once", () -> {
+                assertThat(context.getBeansOfType(AbacExportController.class).size(), is(1));
+                assertThat(handlers(AbacExportController.class), is(1L));
+            });
+        });
+    }
+
+    private long handlers(Class<?> controller) {
+        return mapping.getHandlerMethods().values().stream()
+                .filter(handler -> handler.getBeanType().equals(controller))
+                .count();
+    }
+
+    @Test
+    public void noop() {
+    }
+}
@@ -17,10 +17,10 @@ import org.springframework.content.solr.FilterQueryProvider;
 import org.springframework.content.solr.SolrProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.querydsl.ABACContext;
 import org.springframework.data.querydsl.EnableAbac;
 import org.springframework.web.context.annotation.RequestScope;
 
+import com.example.abac_commons.ABACContext;
 import com.example.demo.support.OPATestContainer;
 import com.example.demo.support.SolrTestContainer;
 
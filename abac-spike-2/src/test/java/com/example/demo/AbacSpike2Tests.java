@@ -11,9 +11,12 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.isIn;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
@@ -39,6 +42,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.versions.VersionInfo;
 import org.springframework.web.client.RestTemplate;
 
+import com.example.abac_commons.SliceContext;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.paulcwarren.ginkgo4j.Ginkgo4jConfiguration;
@@ -309,6 +313,29 @@ public class AbacSpike2Tests {
                 });
             });
 
+            Context("#slice", () -> {
+
+                Context("when a broker requests a count free page of account statements", () -> {
+
+                    It("should only return the ones they own", () -> {
+
+                        json = given()
+                                .header("X-ABAC-Context", queryOPA(opaUrl,Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/"))))
+                                .header(SliceContext.SLICE_HEADER, "true")
+                                .get("/accountStates?page=0&size=2&sort=name&name.dir=asc")
+                                .then()
+                                .statusCode(HttpStatus.SC_OK)
+                                .extract()
+                                .jsonPath();
+
+                        List<String> names = json.getList("_embedded.accountStates.name");
+                        assertThat(names.size(), is(2));
+                        assertThat(names, everyItem(isIn(new String[] {"aaa", "ppp"})));
+                        assertThat(names.get(0), is(lessThanOrEqualTo(names.get(1))));
+                    });
+                });
+            });
+
             Context("findById", () -> {
 
                 It("should apply the given abac context", () -> {
@@ -495,6 +522,55 @@ public class AbacSpike2Tests {
                 });
             });
 
+            Context("#batch", () -> {
+
+                Context("when a broker looks up account statements they own and do not own", () -> {
+
+                    It("should only return the ones they own", () -> {
+
+                        String fooDoc1Id = StringUtils.substringAfter(tenantFooDoc1, "/accountStates/");
+                        String barDoc1Id = StringUtils.substringAfter(tenantBarDoc1, "/accountStates/");
+
+                        JsonPath results = given()
+                                .header("X-ABAC-Context", queryOPA(opaUrl,Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/"))))
+                                .get(format("/accountStates/batch?ids=%s,%s", fooDoc1Id, barDoc1Id))
+                                .then()
+                                .statusCode(HttpStatus.SC_OK)
+                                .extract()
+                                .jsonPath();
+
+                        List<String> names = results.getList("content.name");
+                        List<String> unavailable = results.getList("unavailable");
+                        assertThat(names, contains("zzz"));
+                        assertThat(unavailable, contains(barDoc1Id));
+                    });
+                });
+            });
+
+            Context("#batch delete", () -> {
+
+                Context("when a broker deletes account statements they own and do not own", () -> {
+
+                    It("should only delete the ones they own", () -> {
+
+                        String fooDoc2Id = StringUtils.substringAfter(tenantFooDoc2, "/accountStates/");
+                        String barDoc1Id = StringUtils.substringAfter(tenantBarDoc1, "/accountStates/");
+
+                        JsonPath results = given()
+                                .header("X-ABAC-Context", queryOPA(opaUrl,Long.valueOf(StringUtils.substringAfter(brokerFooUri, "/brokers/"))))
+                                .delete(format("/accountStates/batch?ids=%s,%s", fooDoc2Id, barDoc1Id))
+                                .then()
+                                .statusCode(HttpStatus.SC_OK)
+                                .extract()
+                                .jsonPath();
+
+                        assertThat(results.getInt("deleted"), is(1));
+                        assertThat(repo.findById(Long.parseLong(fooDoc2Id)).isPresent(), is(false));
+                        assertThat(repo.findById(Long.parseLong(barDoc1Id)).isPresent(), is(true));
+                    });
+                });
+            });
+
             Context("#content", () -> {
 
                 Context("when a broker gets content they own", () -> {